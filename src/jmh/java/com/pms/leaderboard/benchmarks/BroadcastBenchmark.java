@@ -0,0 +1,105 @@
+package com.pms.leaderboard.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pms.leaderboard.dto.LeaderboardDTO;
+
+/**
+ * One 250 ms broadcast tick of the top-50 snapshot against session count.
+ *
+ * perSession replays the old handler (writeValueAsString inside the
+ * session loop); shared encodes once and hands the same TextMessage to
+ * every session. Sessions are no-op proxies, so only the handler-side cost
+ * is measured, not the container's socket writes.
+ *
+ * mvn -Pjmh test-compile exec:exec
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main BroadcastBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+
+    @Param({"10", "100", "1000", "5000"})
+    private int sessions;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private List<LeaderboardDTO> top;
+    private List<WebSocketSession> open;
+    private Blackhole sink;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        sink = bh;
+        Random rnd = new Random(42);
+        top = new ArrayList<>(50);
+        for (int i = 0; i < 50; i++) {
+            top.add(new LeaderboardDTO(i + 1, UUID.randomUUID(), 200 - i + rnd.nextDouble(),
+                    rnd.nextDouble(), 1 + rnd.nextDouble() * 4, rnd.nextDouble() * 3,
+                    Instant.now().toString()));
+        }
+        open = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            open.add((WebSocketSession) Proxy.newProxyInstance(
+                    WebSocketSession.class.getClassLoader(),
+                    new Class<?>[]{WebSocketSession.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().equals("sendMessage")) {
+                            sink.consume(args[0]);
+                        }
+                        return null;
+                    }));
+        }
+    }
+
+    private Map<String, Object> payload() {
+        return Map.of(
+                "event", "leaderboardSnapshot",
+                "timestamp", System.currentTimeMillis(),
+                "top", top
+        );
+    }
+
+    @Benchmark
+    public void perSession() throws Exception {
+        Map<String, Object> payload = payload();
+        for (WebSocketSession s : open) {
+            s.sendMessage(new TextMessage(mapper.writeValueAsString(payload)));
+        }
+    }
+
+    @Benchmark
+    public void shared() throws Exception {
+        TextMessage frame = new TextMessage(mapper.writeValueAsBytes(payload()));
+        for (WebSocketSession s : open) {
+            s.sendMessage(frame);
+        }
+    }
+}
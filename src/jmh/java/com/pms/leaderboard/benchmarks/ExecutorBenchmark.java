@@ -0,0 +1,96 @@
+package com.pms.leaderboard.benchmarks;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.pms.leaderboard.config.VirtualThreadExecutor;
+
+/**
+ * redisExecutor under simulated Redis latency: 2,000 blocking writes per
+ * operation (each parks for {@code latencyMicros}, like a Lettuce sync call
+ * or executeWithRetry backoff).
+ *
+ * Both executors run {@code concurrency} writes at once, so only the
+ * executor differs: platform = a fixed pool of that many threads (the
+ * default redisExecutor shape, 5,000-slot queue), virtual =
+ * VirtualThreadExecutor with that many permits. 8 is the default platform
+ * pool size. Throughput is ops/s, i.e. batches of 2,000 writes per second.
+ *
+ * mvn -Pjmh test-compile exec:exec
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main ExecutorBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    private static final int TASKS = 2_000;
+
+    @Param({"500", "2000"})
+    private long latencyMicros;
+
+    // platform pool size and virtual permits alike
+    @Param({"8", "64", "256"})
+    private int concurrency;
+
+    private ExecutorService platform;
+    private ExecutorService virtual;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        platform = new ThreadPoolExecutor(
+                concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(5000),
+                new ThreadPoolExecutor.AbortPolicy());
+        virtual = new VirtualThreadExecutor("bench", concurrency, 5000);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        platform.shutdownNow();
+        virtual.shutdownNow();
+    }
+
+    @Benchmark
+    public void platform() throws InterruptedException {
+        run(platform);
+    }
+
+    @Benchmark
+    public void virtual() throws InterruptedException {
+        run(virtual);
+    }
+
+    private void run(ExecutorService executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        long nanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(() -> {
+                LockSupport.parkNanos(nanos); // Redis round trip
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
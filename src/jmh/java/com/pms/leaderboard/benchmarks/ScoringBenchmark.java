@@ -0,0 +1,125 @@
+package com.pms.leaderboard.benchmarks;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.pms.leaderboard.services.RedisBatchEncoder;
+import com.pms.leaderboard.services.RedisScoreService;
+import com.pms.proto.analytics.RiskEvent;
+
+/**
+ * RiskEvent doubles → Redis argument bytes for one batch of 50 events.
+ *
+ * legacyBigDecimal replays the old path (BigDecimal.valueOf x3, BigDecimal
+ * score, doubleValue, one String + byte[] per argument). primitive runs the
+ * production RedisScoreService + RedisBatchEncoder path.
+ *
+ * Run with allocation profiling:
+ * mvn -Pjmh test-compile exec:exec
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main ScoringBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    private static final int BATCH = 50;
+    private static final String HKEY_PREFIX = "leaderboard:portfolio:";
+
+    private final RedisScoreService scores = new RedisScoreService();
+    private final RedisBatchEncoder encoder = new RedisBatchEncoder();
+
+    private final byte[] zkey = "leaderboard:global:daily".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] streamKey = "leaderboard:stream".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] offsetsKey = "leaderboard:offsets:portfolio-risk-metrics".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] generationKey = "leaderboard:generation".getBytes(StandardCharsets.US_ASCII);
+    private final byte[] updatedAt = Instant.now().toString().getBytes(StandardCharsets.US_ASCII);
+
+    private RiskEvent[] events;
+    private UUID[] pids;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        events = new RiskEvent[BATCH];
+        pids = new UUID[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            pids[i] = UUID.randomUUID();
+            events[i] = RiskEvent.newBuilder()
+                    .setPortfolioId(pids[i].toString())
+                    .setAvgRateOfReturn(0.1 + rnd.nextDouble() * 1.4)
+                    .setSharpeRatio(1.0 + rnd.nextDouble() * 4.0)
+                    .setSortinoRatio(0.1 + rnd.nextDouble() * 2.9)
+                    .build();
+        }
+        // steady state: portfolio key bytes are already cached
+        primitive();
+    }
+
+    @Benchmark
+    public void legacyBigDecimal(Blackhole bh) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < BATCH; i++) {
+            RiskEvent e = events[i];
+            UUID pid = pids[i];
+
+            BigDecimal sharpe = BigDecimal.valueOf(e.getSharpeRatio());
+            BigDecimal sortino = BigDecimal.valueOf(e.getSortinoRatio());
+            BigDecimal avg = BigDecimal.valueOf(e.getAvgRateOfReturn());
+
+            BigDecimal score = avg.multiply(BigDecimal.valueOf(50))
+                    .add(sharpe.multiply(BigDecimal.valueOf(30)))
+                    .add(sortino.multiply(BigDecimal.valueOf(20)));
+
+            double composite = score.doubleValue()
+                    + (now % 1000) / 1e9
+                    + Math.abs(pid.hashCode() % 1000) / 1e12;
+
+            String member = pid.toString();
+            bh.consume((HKEY_PREFIX + member).getBytes(StandardCharsets.UTF_8));
+            bh.consume(member.getBytes(StandardCharsets.UTF_8));
+            bh.consume(String.valueOf(composite).getBytes(StandardCharsets.UTF_8));
+            bh.consume(score.toString().getBytes(StandardCharsets.UTF_8));
+            bh.consume(sharpe.toString().getBytes(StandardCharsets.UTF_8));
+            bh.consume(sortino.toString().getBytes(StandardCharsets.UTF_8));
+            bh.consume(avg.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public byte[][] primitive() {
+        long now = System.currentTimeMillis();
+        RedisBatchEncoder.Batch batch = encoder.begin(BATCH, zkey, streamKey, offsetsKey, generationKey, updatedAt);
+        for (int i = 0; i < BATCH; i++) {
+            RiskEvent e = events[i];
+            UUID pid = pids[i];
+
+            double score = scores.baseScore(
+                    e.getAvgRateOfReturn(), e.getSharpeRatio(), e.getSortinoRatio());
+            double composite = scores.compositeScore(score, now, pid);
+
+            batch.add(pid, HKEY_PREFIX, composite, score,
+                    e.getSharpeRatio(), e.getSortinoRatio(), e.getAvgRateOfReturn());
+        }
+        return batch.keysAndArgs();
+    }
+}
@@ -0,0 +1,114 @@
+package com.pms.leaderboard.benchmarks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pms.leaderboard.Handler.FrameEncoder;
+import com.pms.leaderboard.Handler.WireFormat;
+import com.pms.leaderboard.dto.LeaderboardDTO;
+
+/**
+ * Bytes per tick and encode cost of one /ws/updates view frame, JSON vs
+ * protobuf, each with and without permessage-deflate.
+ *
+ * snapshot = the top-50 view; delta = a typical busy tick on it (10 rows
+ * upserted, 10 rank-only moves, 2 removed). Deflate uses a raw deflater
+ * per frame with no context takeover, which is Tomcat's default; it runs
+ * per session, the plain encodings once per view. Frame sizes (payload
+ * bytes on the wire, without the WebSocket header) are printed per trial.
+ *
+ * mvn -Pjmh test-compile exec:exec
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main WireFormatBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"JSON", "PROTOBUF"})
+    private WireFormat format;
+
+    @Param({"false", "true"})
+    private boolean deflate;
+
+    private final FrameEncoder encoder = new FrameEncoder(new ObjectMapper());
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final byte[] deflateBuf = new byte[64 * 1024];
+
+    private List<LeaderboardDTO> top;
+    private List<UUID> removed;
+    private List<FrameEncoder.Moved> moved;
+    private List<LeaderboardDTO> upsert;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        // rows written by a handful of batches share their updatedAt
+        Instant now = Instant.now();
+        top = new ArrayList<>(50);
+        for (int i = 0; i < 50; i++) {
+            top.add(new LeaderboardDTO(i + 1, UUID.randomUUID(), 200 - i + rnd.nextDouble(),
+                    rnd.nextDouble(), 1 + rnd.nextDouble() * 4, rnd.nextDouble() * 3,
+                    now.minusMillis(37L * (i / 10)).toString()));
+        }
+        upsert = top.subList(0, 10);
+        moved = new ArrayList<>();
+        for (int i = 10; i < 20; i++) {
+            moved.add(new FrameEncoder.Moved(top.get(i).getPortfolioId(), i + 2));
+        }
+        removed = List.of(UUID.randomUUID(), UUID.randomUUID());
+
+        // bytes per tick, printed once per trial next to the timings
+        System.out.printf("%n%s deflate=%s: snapshot %d B, delta %d B%n",
+                format, deflate, snapshot(), delta());
+    }
+
+    @Benchmark
+    public int snapshot() {
+        return wire(encoder.snapshot(format, "top:0:50", 1, System.currentTimeMillis(), top));
+    }
+
+    @Benchmark
+    public int delta() {
+        return wire(encoder.delta(format, "top:0:50", 2, System.currentTimeMillis(), removed, moved, upsert));
+    }
+
+    private int wire(WebSocketMessage<?> m) {
+        byte[] payload = switch (m) {
+            case TextMessage t -> t.asBytes();
+            case BinaryMessage b -> b.getPayload().array(); // wraps the whole array
+            default -> throw new IllegalStateException();
+        };
+        return deflate ? deflate(payload) : payload.length;
+    }
+
+    private int deflate(byte[] payload) {
+        deflater.reset();
+        deflater.setInput(payload);
+        return deflater.deflate(deflateBuf, 0, deflateBuf.length, Deflater.SYNC_FLUSH) - 4;
+    }
+}
@@ -0,0 +1,233 @@
+-- As-of leaderboard benchmark on 100M leaderboard_snapshot rows.
+--
+-- Compares rebuilding the board at T from raw history (DISTINCT ON over
+-- every row <= T) with SnapshotAsOfService's keyframe + delta query, for
+-- a top-100 slice and a +-10 slice around one portfolio.
+--
+-- Data: 10,000 portfolios x 10,000 snapshots each = 100M rows over 30
+-- days in daily partitions, written in time order like the stream
+-- consumer does (one snapshot per portfolio every ~4.3 min), hourly
+-- keyframes. Everything lives in schema asof_bench; drop it afterwards.
+-- Load takes tens of minutes and ~15 GB of disk.
+--
+--   psql -h localhost -U leaderboard -d leaderboard_db -f src/jmh/sql/as-of-100m.sql
+--
+-- The table/index DDL mirrors SnapshotPartitions, the keyframe and
+-- as-of SQL mirror SnapshotKeyframes / SnapshotAsOfService (named
+-- parameters replaced by psql variables).
+--
+-- Results (2026-10-17): PostgreSQL 15.10 with postgres:15 image defaults
+-- (shared_buffers 128MB, work_mem 4MB; max_wal_size raised for the
+-- load), 1 vCPU, 5 GB RAM, 99,999,990 rows. Not the compose container
+-- itself: same major version and settings, on a smaller machine.
+--
+--   load, 30 daily INSERTs         28 min (47-83 s per day)
+--   BRIN / history index            34 s / 181 s
+--   720 hourly keyframes           260 s (median 288 ms, max 6.0 s)
+--
+--   EXPLAIN ANALYZE at T = day 20 14:37, 37 min after the keyframe:
+--   raw history, top 100       140,169 ms  68.7M rows sorted, 2.8 GB
+--                                          external merge, 909k pages read
+--   keyframe lookup                  0.2 ms
+--   keyframe + delta, top 100      139.5 ms  85,648 delta rows from one
+--                                          partition, 2,251 pages
+--   keyframe + delta, +-10         137.9 ms
+--
+-- The delta sort spills at work_mem 4MB (external merge, 5.3 MB).
+--
+-- Re-run after event_at (same rows, event_at added as NULL, keyframes
+-- rebuilt; they came out identical): one DISTINCT ON over delta and
+-- keyframe rows instead of an anti-join, so the sort is ~96k wider rows
+-- (6.6 MB spilled). 720 keyframes 239 s (median 331 ms); top 100
+-- 216 ms, +-10 223 ms. Alternating 5 runs each, top 100: median 173 ms
+-- before, 202 ms after.
+
+\set ON_ERROR_STOP on
+\timing on
+
+DROP SCHEMA IF EXISTS asof_bench CASCADE;
+CREATE SCHEMA asof_bench;
+SET search_path = asof_bench;
+
+\set t0 '''2026-01-01 00:00:00+00'''
+\set days 30
+\set portfolios 10000
+\set per_portfolio 10000
+
+-- ---------- SCHEMA ----------
+CREATE TABLE leaderboard_snapshot (
+    history_id          uuid           NOT NULL,
+    portfolio_id        uuid           NOT NULL,
+    portfolio_score     numeric(38, 2) NOT NULL,
+    leaderboard_ranking bigint         NOT NULL,
+    avg_rate_of_return  numeric(38, 2) NOT NULL,
+    sharpe_ratio        numeric(38, 2) NOT NULL,
+    sortino_ratio       numeric(38, 2) NOT NULL,
+    updated_at          timestamptz(6) NOT NULL,
+    event_at            timestamptz(6),
+    PRIMARY KEY (history_id, updated_at)
+) PARTITION BY RANGE (updated_at);
+
+CREATE TABLE leaderboard_keyframe (
+    taken_at            timestamptz(6) NOT NULL,
+    portfolio_id        uuid           NOT NULL,
+    portfolio_score     numeric(38, 2) NOT NULL,
+    avg_rate_of_return  numeric(38, 2) NOT NULL,
+    sharpe_ratio        numeric(38, 2) NOT NULL,
+    sortino_ratio       numeric(38, 2) NOT NULL,
+    updated_at          timestamptz(6) NOT NULL,
+    event_at            timestamptz(6),
+    PRIMARY KEY (taken_at, portfolio_id)
+);
+
+SELECT format('CREATE TABLE leaderboard_snapshot_p%s PARTITION OF leaderboard_snapshot FOR VALUES FROM (%L) TO (%L)',
+              to_char(d, 'YYYYMMDD'), d, d + interval '1 day')
+FROM generate_series(timestamptz :t0, timestamptz :t0 + (:days - 1) * interval '1 day', interval '1 day') AS d
+\gexec
+
+-- ---------- LOAD (one transaction per day, time order) ----------
+-- history_id: random uuid here (PG15 has no uuidv7); as-of never reads it.
+-- event_at = updated_at: no late rows
+SELECT format($load$
+    INSERT INTO leaderboard_snapshot
+    SELECT gen_random_uuid(),
+           md5((i %% %1$s)::text)::uuid,
+           round((random() * 1000)::numeric, 2),
+           1 + (random() * %1$s)::bigint,
+           round((random() * 0.2 - 0.1)::numeric, 2),
+           round((random() * 4)::numeric, 2),
+           round((random() * 6)::numeric, 2),
+           t.at,
+           t.at
+    FROM generate_series(0, %3$s - 1) AS i,
+         LATERAL (SELECT %2$L::timestamptz + (i * 86400.0 / %3$s) * interval '1 second' AS at) t
+    $load$, :portfolios, d, (:portfolios::bigint * :per_portfolio / :days))
+FROM generate_series(timestamptz :t0, timestamptz :t0 + (:days - 1) * interval '1 day', interval '1 day') AS d
+\gexec
+
+CREATE INDEX leaderboard_snapshot_updated_at_brin
+    ON leaderboard_snapshot USING brin (updated_at) WITH (pages_per_range = 32);
+CREATE INDEX leaderboard_snapshot_history_idx
+    ON leaderboard_snapshot (portfolio_id, updated_at)
+    INCLUDE (leaderboard_ranking, portfolio_score, event_at);
+
+VACUUM ANALYZE leaderboard_snapshot;
+
+SELECT count(*) AS snapshot_rows FROM leaderboard_snapshot;
+
+-- ---------- KEYFRAMES (hourly, each from the previous one) ----------
+SELECT format($kf$
+    WITH candidates AS (
+        SELECT s.portfolio_id, s.portfolio_score, s.avg_rate_of_return,
+               s.sharpe_ratio, s.sortino_ratio, s.updated_at,
+               COALESCE(s.event_at, s.updated_at) AS event_at
+        FROM leaderboard_snapshot s
+        WHERE s.updated_at > COALESCE(%1$L::timestamptz, TIMESTAMPTZ '-infinity')
+          AND s.updated_at <= %2$L::timestamptz
+        UNION ALL
+        SELECT k.portfolio_id, k.portfolio_score, k.avg_rate_of_return,
+               k.sharpe_ratio, k.sortino_ratio, k.updated_at,
+               COALESCE(k.event_at, k.updated_at)
+        FROM leaderboard_keyframe k
+        WHERE k.taken_at = %1$L::timestamptz
+    ),
+    board AS (
+        SELECT DISTINCT ON (c.portfolio_id) c.*
+        FROM candidates c
+        ORDER BY c.portfolio_id, c.event_at DESC, c.updated_at DESC
+    )
+    INSERT INTO leaderboard_keyframe
+    SELECT %2$L::timestamptz, b.portfolio_id, b.portfolio_score,
+           b.avg_rate_of_return, b.sharpe_ratio, b.sortino_ratio,
+           b.updated_at, b.event_at
+    FROM board b
+    ON CONFLICT (taken_at, portfolio_id) DO NOTHING
+    $kf$, CASE WHEN h = timestamptz :t0 THEN NULL ELSE h - interval '1 hour' END, h)
+FROM generate_series(timestamptz :t0, timestamptz :t0 + :days * interval '1 day' - interval '1 hour', interval '1 hour') AS h
+\gexec
+
+VACUUM ANALYZE leaderboard_keyframe;
+
+-- ---------- QUERIES at T = day 20, 14:37 ----------
+\set at '''2026-01-21 14:37:00+00'''
+\set keyframe '''2026-01-21 14:00:00+00'''
+\set pid '''c4ca4238-a0b9-2382-0dcc-509a6f75849b'''
+
+-- baseline: latest row per portfolio straight from history
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF)
+SELECT s.portfolio_id, s.portfolio_score
+FROM (
+    SELECT DISTINCT ON (portfolio_id) portfolio_id, portfolio_score
+    FROM leaderboard_snapshot
+    WHERE updated_at <= :at
+    ORDER BY portfolio_id, updated_at DESC
+) s
+ORDER BY s.portfolio_score DESC, s.portfolio_id
+LIMIT 100;
+
+-- SnapshotAsOfService.top (keyframe lookup + TOP)
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF)
+SELECT max(taken_at) FROM leaderboard_keyframe WHERE taken_at <= :at;
+
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF)
+WITH candidates AS (
+    SELECT s.portfolio_id, s.portfolio_score, s.avg_rate_of_return,
+           s.sharpe_ratio, s.sortino_ratio, s.updated_at,
+           COALESCE(s.event_at, s.updated_at) AS event_at
+    FROM leaderboard_snapshot s
+    WHERE s.updated_at > COALESCE(timestamptz :keyframe, TIMESTAMPTZ '-infinity')
+      AND s.updated_at <= :at
+    UNION ALL
+    SELECT k.portfolio_id, k.portfolio_score, k.avg_rate_of_return,
+           k.sharpe_ratio, k.sortino_ratio, k.updated_at,
+           COALESCE(k.event_at, k.updated_at)
+    FROM leaderboard_keyframe k
+    WHERE k.taken_at = :keyframe
+),
+board AS (
+    SELECT DISTINCT ON (c.portfolio_id) c.*
+    FROM candidates c
+    ORDER BY c.portfolio_id, c.event_at DESC, c.updated_at DESC
+)
+SELECT b.portfolio_id, b.portfolio_score, b.avg_rate_of_return,
+       b.sharpe_ratio, b.sortino_ratio, b.event_at,
+       0 + row_number() OVER (ORDER BY b.portfolio_score DESC, b.portfolio_id) AS rank
+FROM (
+    SELECT * FROM board
+    ORDER BY portfolio_score DESC, portfolio_id
+    OFFSET 0 LIMIT 100
+) b
+ORDER BY rank;
+
+-- SnapshotAsOfService.around (+-10)
+EXPLAIN (ANALYZE, BUFFERS, TIMING OFF)
+WITH candidates AS (
+    SELECT s.portfolio_id, s.portfolio_score, s.avg_rate_of_return,
+           s.sharpe_ratio, s.sortino_ratio, s.updated_at,
+           COALESCE(s.event_at, s.updated_at) AS event_at
+    FROM leaderboard_snapshot s
+    WHERE s.updated_at > COALESCE(timestamptz :keyframe, TIMESTAMPTZ '-infinity')
+      AND s.updated_at <= :at
+    UNION ALL
+    SELECT k.portfolio_id, k.portfolio_score, k.avg_rate_of_return,
+           k.sharpe_ratio, k.sortino_ratio, k.updated_at,
+           COALESCE(k.event_at, k.updated_at)
+    FROM leaderboard_keyframe k
+    WHERE k.taken_at = :keyframe
+),
+board AS (
+    SELECT DISTINCT ON (c.portfolio_id) c.*
+    FROM candidates c
+    ORDER BY c.portfolio_id, c.event_at DESC, c.updated_at DESC
+)
+, ranked AS (
+    SELECT b.*, row_number() OVER (ORDER BY b.portfolio_score DESC, b.portfolio_id) AS rank
+    FROM board b
+)
+SELECT r.portfolio_id, r.portfolio_score, r.avg_rate_of_return,
+       r.sharpe_ratio, r.sortino_ratio, r.event_at, r.rank
+FROM ranked r, (SELECT rank FROM ranked WHERE portfolio_id = :pid) c
+WHERE r.rank BETWEEN c.rank - 10 AND c.rank + 10
+ORDER BY r.rank;
+
+-- DROP SCHEMA asof_bench CASCADE;
@@ -0,0 +1,113 @@
+package com.pms.leaderboard.Handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.pms.leaderboard.dto.LeaderboardDTO;
+
+/**
+ * One published leaderboard view as a sequenced stream of frames.
+ *
+ * Each {@link #publish} diffs the new rows against the previous ones and
+ * emits a delta carrying seq = previous seq + 1:
+ * - removed: portfolio ids that left the view,
+ * - moved:   {portfolioId, rank} for rows whose only change is the rank,
+ * - upsert:  full rows that are new or whose metrics changed.
+ * Nothing changed → no frame, no seq bump.
+ *
+ * The snapshot frame for the current seq (sent on subscribe, on a client
+ * resync request, and in place of deltas a lagging session lost) is
+ * created lazily, at most once per seq. Both are encoded per wire format
+ * on first use.
+ */
+final class DeltaChannel {
+
+    private final String name;
+    private final FrameEncoder encoder;
+
+    // guarded by this
+    private long seq;
+    private List<LeaderboardDTO> rows = List.of();
+    private Map<UUID, LeaderboardDTO> byId = Map.of();
+    private OutboundFrame snapshot;
+
+    DeltaChannel(String name, FrameEncoder encoder) {
+        this.name = name;
+        this.encoder = encoder;
+    }
+
+    /**
+     * Delta frame for the change, or null if nothing changed.
+     */
+    synchronized OutboundFrame publish(List<LeaderboardDTO> next, long timestamp) {
+
+        Map<UUID, LeaderboardDTO> nextById = new HashMap<>(next.size() * 2);
+        List<FrameEncoder.Moved> moved = new ArrayList<>();
+        List<LeaderboardDTO> upsert = new ArrayList<>();
+
+        for (LeaderboardDTO row : next) {
+            nextById.put(row.getPortfolioId(), row);
+            LeaderboardDTO prev = byId.get(row.getPortfolioId());
+            if (prev == null) {
+                upsert.add(row);
+            } else if (!prev.equals(row)) {
+                if (sameMetrics(prev, row)) {
+                    moved.add(new FrameEncoder.Moved(row.getPortfolioId(), row.getRank()));
+                } else {
+                    upsert.add(row);
+                }
+            }
+        }
+
+        List<UUID> removed = new ArrayList<>();
+        for (UUID pid : byId.keySet()) {
+            if (!nextById.containsKey(pid)) {
+                removed.add(pid);
+            }
+        }
+
+        if (upsert.isEmpty() && moved.isEmpty() && removed.isEmpty() && seq > 0) {
+            return null;
+        }
+
+        seq++;
+        rows = List.copyOf(next);
+        byId = nextById;
+        snapshot = null;
+
+        long s = seq;
+        return new OutboundFrame(format
+                -> encoder.delta(format, name, s, timestamp, removed, moved, upsert));
+    }
+
+    /**
+     * Full state at the current seq, or null before the first publish.
+     */
+    synchronized OutboundFrame snapshot() {
+
+        if (seq == 0) {
+            return null;
+        }
+
+        if (snapshot == null) {
+            long s = seq;
+            long timestamp = System.currentTimeMillis();
+            List<LeaderboardDTO> top = rows;
+            snapshot = new OutboundFrame(format
+                    -> encoder.snapshot(format, name, s, timestamp, top));
+        }
+        return snapshot;
+    }
+
+    private static boolean sameMetrics(LeaderboardDTO a, LeaderboardDTO b) {
+        return a.getCompositeScore() == b.getCompositeScore()
+                && a.getAvgReturn() == b.getAvgReturn()
+                && a.getSharpe() == b.getSharpe()
+                && a.getSortino() == b.getSortino()
+                && Objects.equals(a.getUpdated(), b.getUpdated());
+    }
+}
@@ -0,0 +1,185 @@
+package com.pms.leaderboard.Handler;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pms.leaderboard.dto.LeaderboardDTO;
+import com.pms.proto.ws.Delta;
+import com.pms.proto.ws.ErrorFrame;
+import com.pms.proto.ws.Frame;
+import com.pms.proto.ws.Row;
+import com.pms.proto.ws.Snapshot;
+import com.pms.proto.ws.Uuid;
+
+/**
+ * Encodes /ws/updates frames in either {@link WireFormat}.
+ *
+ * JSON keeps the existing shape (UUIDs as strings, updated as ISO-8601).
+ * Protobuf ({@code src/main/proto/leaderboard-ws.proto}) sends UUIDs as two
+ * fixed64 and updated as epoch millis.
+ */
+public final class FrameEncoder {
+
+    public record Moved(UUID portfolioId, long rank) {
+    }
+
+    private final ObjectMapper mapper;
+
+    public FrameEncoder(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    public WebSocketMessage<?> snapshot(
+            WireFormat format,
+            String view,
+            long seq,
+            long timestamp,
+            List<LeaderboardDTO> rows
+    ) {
+        if (format == WireFormat.PROTOBUF) {
+            Snapshot.Builder snapshot = Snapshot.newBuilder();
+            EpochCache epoch = new EpochCache();
+            for (LeaderboardDTO r : rows) {
+                snapshot.addTop(row(r, epoch));
+            }
+            return binary(header(view, seq, timestamp).setSnapshot(snapshot));
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("event", "leaderboardSnapshot");
+        payload.put("view", view);
+        payload.put("seq", seq);
+        payload.put("timestamp", timestamp);
+        payload.put("top", rows);
+        return json(payload);
+    }
+
+    public WebSocketMessage<?> delta(
+            WireFormat format,
+            String view,
+            long seq,
+            long timestamp,
+            List<UUID> removed,
+            List<Moved> moved,
+            List<LeaderboardDTO> upsert
+    ) {
+        if (format == WireFormat.PROTOBUF) {
+            Delta.Builder delta = Delta.newBuilder();
+            for (UUID pid : removed) {
+                delta.addRemoved(uuid(pid));
+            }
+            for (Moved m : moved) {
+                delta.addMoved(com.pms.proto.ws.Moved.newBuilder()
+                        .setPortfolioId(uuid(m.portfolioId()))
+                        .setRank(m.rank()));
+            }
+            EpochCache epoch = new EpochCache();
+            for (LeaderboardDTO r : upsert) {
+                delta.addUpsert(row(r, epoch));
+            }
+            return binary(header(view, seq, timestamp).setDelta(delta));
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("event", "leaderboardDelta");
+        payload.put("view", view);
+        payload.put("seq", seq);
+        payload.put("timestamp", timestamp);
+        payload.put("removed", removed);
+        payload.put("moved", moved);
+        payload.put("upsert", upsert);
+        return json(payload);
+    }
+
+    public WebSocketMessage<?> error(WireFormat format, String message) {
+        return error(format, null, message);
+    }
+
+    /**
+     * Error about one view (view = its key), or about the request when
+     * view is null.
+     */
+    public WebSocketMessage<?> error(WireFormat format, String view, String message) {
+        if (format == WireFormat.PROTOBUF) {
+            Frame.Builder frame = Frame.newBuilder()
+                    .setTimestamp(System.currentTimeMillis())
+                    .setError(ErrorFrame.newBuilder().setMessage(message));
+            if (view != null) {
+                frame.setView(view);
+            }
+            return binary(frame);
+        }
+
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("event", "error");
+        if (view != null) {
+            payload.put("view", view);
+        }
+        payload.put("message", message);
+        return json(payload);
+    }
+
+    // ---------- PROTOBUF ----------
+    private static Frame.Builder header(String view, long seq, long timestamp) {
+        return Frame.newBuilder().setView(view).setSeq(seq).setTimestamp(timestamp);
+    }
+
+    // rows of one batch share updatedAt: parse each distinct run once
+    private static final class EpochCache {
+
+        private String last;
+        private long lastMillis;
+
+        long millis(String iso) {
+            if (iso == null) {
+                return 0;
+            }
+            if (!iso.equals(last)) {
+                lastMillis = Instant.parse(iso).toEpochMilli();
+                last = iso;
+            }
+            return lastMillis;
+        }
+    }
+
+    private static Row row(LeaderboardDTO r, EpochCache epoch) {
+        return Row.newBuilder()
+                .setPortfolioId(uuid(r.getPortfolioId()))
+                .setRank(r.getRank())
+                .setCompositeScore(r.getCompositeScore())
+                .setAvgReturn(r.getAvgReturn())
+                .setSharpe(r.getSharpe())
+                .setSortino(r.getSortino())
+                .setUpdatedEpochMs(epoch.millis(r.getUpdated()))
+                .build();
+    }
+
+    private static Uuid uuid(UUID id) {
+        return Uuid.newBuilder()
+                .setMsb(id.getMostSignificantBits())
+                .setLsb(id.getLeastSignificantBits())
+                .build();
+    }
+
+    private static BinaryMessage binary(Frame.Builder frame) {
+        return new BinaryMessage(ByteBuffer.wrap(frame.build().toByteArray()));
+    }
+
+    // ---------- JSON ----------
+    private TextMessage json(Map<String, Object> payload) {
+        try {
+            return new TextMessage(mapper.writeValueAsBytes(payload));
+        } catch (Exception e) {
+            throw new IllegalStateException("WS frame encoding failed", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.pms.leaderboard.Handler;
+
+import java.util.function.Function;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+/**
+ * One logical frame, encoded at most once per {@link WireFormat} and only
+ * for formats some recipient actually uses. The encoded message is shared
+ * by every session of that format.
+ */
+final class OutboundFrame {
+
+    private final Function<WireFormat, WebSocketMessage<?>> encoder;
+    private final WebSocketMessage<?>[] encoded = new WebSocketMessage<?>[WireFormat.values().length];
+
+    OutboundFrame(Function<WireFormat, WebSocketMessage<?>> encoder) {
+        this.encoder = encoder;
+    }
+
+    synchronized WebSocketMessage<?> as(WireFormat format) {
+        WebSocketMessage<?> m = encoded[format.ordinal()];
+        if (m == null) {
+            m = encoder.apply(format);
+            encoded[format.ordinal()] = m;
+        }
+        return m;
+    }
+}
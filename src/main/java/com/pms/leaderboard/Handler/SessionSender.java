@@ -0,0 +1,182 @@
+package com.pms.leaderboard.Handler;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * Outbound queue of one WebSocket session, drained on wsSendExecutor so a
+ * slow client only ever delays itself.
+ *
+ * Bounded at {@code capacity} frames per subscribed view. When a frame
+ * arrives at a full queue the session is behind: everything queued is
+ * stale, so it is dropped and replaced by one snapshot of each subscribed
+ * view (conflation; deltas cannot be skipped, a snapshot can). At most one
+ * drain task per session runs at a time, which also keeps sendMessage
+ * single-threaded as the container requires.
+ */
+final class SessionSender {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionSender.class);
+
+    private final WebSocketSession session;
+    private final ExecutorService executor;
+    private final int capacity;
+    private final WireFormat format;
+
+    // guarded by itself
+    private final ArrayDeque<WebSocketMessage<?>> queue;
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    // view key → channel; guarded by the WebSocketHandler lock
+    private final Map<String, DeltaChannel> channels = new LinkedHashMap<>();
+
+    // 0 = keeping up / not inside sendMessage
+    private volatile long behindSinceNanos;
+    private volatile long sendStartedNanos;
+
+    SessionSender(WebSocketSession session, ExecutorService executor, int capacity, WireFormat format) {
+        this.session = session;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.format = format;
+        this.queue = new ArrayDeque<>(capacity);
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    WireFormat format() {
+        return format;
+    }
+
+    Collection<String> views() {
+        return channels.keySet();
+    }
+
+    void subscribe(String key, DeltaChannel channel) {
+        channels.put(key, channel);
+    }
+
+    void unsubscribe(String key) {
+        channels.remove(key);
+    }
+
+    /**
+     * Enqueues without blocking. On a full queue everything queued plus
+     * {@code frame} is replaced by the subscribed views' snapshots, which
+     * must already include {@code frame}'s change. Returns true if that
+     * happened.
+     */
+    boolean offer(OutboundFrame frame) {
+
+        boolean conflated = false;
+
+        synchronized (queue) {
+            if (queue.size() >= capacity * Math.max(1, channels.size())) {
+                conflated = true;
+                if (behindSinceNanos == 0) {
+                    behindSinceNanos = System.nanoTime();
+                }
+                replaceWithSnapshots();
+            } else {
+                queue.addLast(frame.as(format));
+            }
+        }
+
+        schedule();
+        return conflated;
+    }
+
+    /**
+     * Drops anything queued and sends every subscribed view's snapshot next
+     * (client resync request).
+     */
+    void resync() {
+        synchronized (queue) {
+            replaceWithSnapshots();
+        }
+        schedule();
+    }
+
+    private void replaceWithSnapshots() {
+        queue.clear();
+        for (DeltaChannel c : channels.values()) {
+            OutboundFrame snapshot = c.snapshot();
+            // not published yet → its first delta is the full view
+            if (snapshot != null) {
+                queue.addLast(snapshot.as(format));
+            }
+        }
+    }
+
+    /**
+     * Behind (conflating) or stuck inside one send for longer than
+     * {@code limitNanos}.
+     */
+    boolean isStalled(long now, long limitNanos) {
+        long behind = behindSinceNanos;
+        long sending = sendStartedNanos;
+        return (behind != 0 && now - behind > limitNanos)
+                || (sending != 0 && now - sending > limitNanos);
+    }
+
+    private void schedule() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // frames stay queued; the next offer retries
+                draining.set(false);
+                log.warn("WS send executor saturated, session {} deferred", session.getId());
+            }
+        }
+    }
+
+    private void drain() {
+
+        while (true) {
+
+            WebSocketMessage<?> next;
+            synchronized (queue) {
+                next = queue.pollFirst();
+                if (next == null) {
+                    // caught up; any later offer schedules a new drain
+                    behindSinceNanos = 0;
+                    draining.set(false);
+                    return;
+                }
+            }
+
+            if (!session.isOpen()) {
+                synchronized (queue) {
+                    queue.clear();
+                }
+                continue;
+            }
+
+            try {
+                sendStartedNanos = System.nanoTime();
+                // shared frame: each send reads its own view of the buffer
+                session.sendMessage(next instanceof BinaryMessage b
+                        ? new BinaryMessage(b.getPayload().duplicate(), b.isLast())
+                        : next);
+            } catch (Exception e) {
+                log.warn("WS send failed session={}", session.getId(), e);
+            } finally {
+                sendStartedNanos = 0;
+            }
+        }
+    }
+}
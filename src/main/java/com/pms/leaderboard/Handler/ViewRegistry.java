@@ -0,0 +1,88 @@
+package com.pms.leaderboard.Handler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pms.leaderboard.dto.ViewSpec;
+
+/**
+ * Subscription index: view key → one channel and its subscribers.
+ *
+ * However many sessions watch the same view, its rows are fetched, diffed
+ * and encoded once per publish; cost scales with distinct views, not
+ * sessions. A view disappears with its last subscriber.
+ *
+ * Mutated and iterated under the WebSocketHandler lock only; the map is
+ * concurrent so gauges and {@link #specs()} may read it from outside.
+ */
+final class ViewRegistry {
+
+    static final class View {
+
+        final ViewSpec spec;
+        final DeltaChannel channel;
+        final Set<SessionSender> subscribers = new LinkedHashSet<>();
+        // last fetch was outside the replicated range; error frame sent
+        OutboundFrame outOfRange;
+
+        private View(ViewSpec spec, DeltaChannel channel) {
+            this.spec = spec;
+            this.channel = channel;
+        }
+    }
+
+    private final FrameEncoder encoder;
+    private final Map<String, View> views = new ConcurrentHashMap<>();
+
+    ViewRegistry(FrameEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    View subscribe(ViewSpec spec, SessionSender sender) {
+        String key = spec.key();
+        View view = views.computeIfAbsent(key, k -> new View(spec, new DeltaChannel(k, encoder)));
+        view.subscribers.add(sender);
+        sender.subscribe(key, view.channel);
+        return view;
+    }
+
+    void unsubscribe(String key, SessionSender sender) {
+        sender.unsubscribe(key);
+        View view = views.get(key);
+        if (view != null && view.subscribers.remove(sender) && view.subscribers.isEmpty()) {
+            views.remove(key);
+        }
+    }
+
+    void unsubscribeAll(SessionSender sender) {
+        for (String key : List.copyOf(sender.views())) {
+            unsubscribe(key, sender);
+        }
+    }
+
+    View get(String key) {
+        return views.get(key);
+    }
+
+    Collection<View> views() {
+        return views.values();
+    }
+
+    // point-in-time copy for computing rows outside the lock
+    List<ViewSpec> specs() {
+        List<ViewSpec> out = new ArrayList<>(views.size());
+        for (View v : views.values()) {
+            out.add(v.spec);
+        }
+        return out;
+    }
+
+    int size() {
+        return views.size();
+    }
+}
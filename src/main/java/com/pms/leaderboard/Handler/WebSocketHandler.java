@@ -1,33 +1,50 @@
 package com.pms.leaderboard.Handler;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import jakarta.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import com.pms.leaderboard.dto.LeaderboardDTO;
+import com.pms.leaderboard.dto.ViewSpec;
+import com.pms.leaderboard.exceptions.BadRequestException;
+import com.pms.leaderboard.exceptions.OutsideReplicatedRangeException;
 import com.pms.leaderboard.services.LeaderboardService;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
 
 @Component
-public class WebSocketHandler extends TextWebSocketHandler {
+public class WebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
 
     private static final Logger log = LoggerFactory.getLogger(WebSocketHandler.class);
 
-    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+    // session id → its outbound queue
+    private final Map<String, SessionSender> sessions = new ConcurrentHashMap<>();
 
     @Autowired
     ObjectMapper mapper;
@@ -35,36 +52,318 @@ public class WebSocketHandler extends TextWebSocketHandler {
     @Autowired
     LeaderboardService leaderboardService;
 
+    @Autowired
+    @Qualifier("wsSendExecutor")
+    private ExecutorService wsSendExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.websocket.send-queue-capacity:4}")
+    private int sendQueueCapacity;
+
+    @Value("${app.websocket.slow-session-evict-ms:5000}")
+    private long slowSessionEvictMs;
+
+    @Value("${app.websocket.max-views-per-session:8}")
+    private int maxViewsPerSession;
+
+    // cap on top n, 2·range+1 and watchlist size
+    @Value("${app.websocket.max-view-rows:200}")
+    private int maxViewRows;
+
+    // what a new session is subscribed to until it asks for something else
+    static final ViewSpec DEFAULT_VIEW = ViewSpec.top(0, 50);
+
+    private Counter conflated;
+    private Counter evicted;
+
+    private FrameEncoder encoder;
+
+    // view key → channel + subscribers
+    private ViewRegistry views;
+
+    // run when a view is created, outside the broadcast lock
+    private volatile Runnable onSubscribe = () -> {
+    };
+
+    @PostConstruct
+    public void initMetrics() {
+        encoder = new FrameEncoder(mapper);
+        views = new ViewRegistry(encoder);
+
+        Gauge.builder("leaderboard.ws.sessions", sessions, Map::size)
+                .description("Open WebSocket sessions")
+                .register(meterRegistry);
+        Gauge.builder("leaderboard.ws.views", this, h -> h.views.size())
+                .description("Distinct subscription views computed per publish")
+                .register(meterRegistry);
+        conflated = Counter.builder("leaderboard.ws.conflated")
+                .description("Lagging session queues replaced by view snapshots")
+                .register(meterRegistry);
+        evicted = Counter.builder("leaderboard.ws.evicted")
+                .description("Sessions closed for staying slow past the threshold")
+                .register(meterRegistry);
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessions.add(session);
+        SessionSender sender = new SessionSender(session, wsSendExecutor, sendQueueCapacity,
+                WireFormat.of(session.getAcceptedProtocol()));
+        sessions.put(session.getId(), sender);
+        subscribe(sender, DEFAULT_VIEW);
         System.out.println(" Client Connected: " + session.getId());
     }
 
+    /**
+     * Offered in the handshake. A client asking for "leaderboard.proto.v1"
+     * gets binary protobuf frames (src/main/proto/leaderboard-ws.proto);
+     * anything else, or nothing, gets JSON text frames. Client → server
+     * messages are JSON text either way.
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(WireFormat.PROTOBUF.subProtocol(), WireFormat.JSON.subProtocol());
+    }
+
+    public boolean hasSessions() {
+        return !sessions.isEmpty();
+    }
+
+    public List<ViewSpec> viewSpecs() {
+        return views.specs();
+    }
+
+    /**
+     * Publishers skip work for views nobody subscribed to; this tells them
+     * a new view needs its first publish.
+     */
+    public void onSubscribe(Runnable listener) {
+        this.onSubscribe = listener;
+    }
+
+    /**
+     * Client → server:
+     * {"type":"subscribe","view":"top","offset":0,"n":20}
+     * {"type":"subscribe","view":"around","portfolioId":"…","range":5}
+     * {"type":"subscribe","view":"watch","portfolioIds":["…", …]}
+     * {"type":"unsubscribe","view":"top:0:50"}   (a view key, see ViewSpec)
+     * {"type":"resync"}                          (after a seq gap)
+     */
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+
+        SessionSender sender = sessions.get(session.getId());
+        if (sender == null) {
+            return;
+        }
+
+        JsonNode msg;
+        try {
+            msg = mapper.readTree(message.getPayload());
+        } catch (Exception e) {
+            log.warn("WS unreadable client message session={}", session.getId());
+            return;
+        }
+
+        try {
+            switch (msg.path("type").asText()) {
+                case "subscribe" -> subscribe(sender, parseView(msg));
+                case "unsubscribe" -> {
+                    synchronized (this) {
+                        views.unsubscribe(msg.path("view").asText(), sender);
+                    }
+                }
+                case "resync" -> {
+                    synchronized (this) {
+                        sender.resync();
+                    }
+                }
+                default -> throw new BadRequestException("Unknown message type", null);
+            }
+        } catch (BadRequestException e) {
+            sendError(sender, e.getMessage());
+        }
+    }
+
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
+        SessionSender sender = sessions.remove(session.getId());
+        if (sender != null) {
+            synchronized (this) {
+                views.unsubscribeAll(sender);
+            }
+        }
     }
 
-    public void broadcastSnapshot(List<LeaderboardDTO> list) {
+    private void subscribe(SessionSender sender, ViewSpec spec) {
 
-        log.info(" WS broadcast to {} sessions", sessions.size());
+        boolean created;
 
-        Map<String, Object> payload = Map.of(
-                "event", "leaderboardSnapshot",
-                "timestamp", Instant.now().toEpochMilli(),
-                "top", list
-        );
+        // same lock as publish → the snapshot's seq is the base of the next delta
+        synchronized (this) {
+            if (sender.views().size() >= maxViewsPerSession && !sender.views().contains(spec.key())) {
+                throw new BadRequestException("Too many views, max " + maxViewsPerSession, null);
+            }
+            ViewRegistry.View view = views.subscribe(spec, sender);
+            OutboundFrame snapshot = view.channel.snapshot();
+            created = snapshot == null;
+            if (!created) {
+                sender.offer(snapshot);
+            }
+            if (view.outOfRange != null) {
+                sender.offer(view.outOfRange);
+            }
+        }
 
-        sessions.forEach(session -> {
+        if (created) {
+            onSubscribe.run();
+        }
+    }
+
+    private ViewSpec parseView(JsonNode msg) {
+        try {
+            ViewSpec spec = switch (msg.path("view").asText()) {
+                case "top" -> ViewSpec.top(msg.path("offset").asInt(0), msg.path("n").asInt(DEFAULT_VIEW.n()));
+                case "around" -> ViewSpec.around(
+                        UUID.fromString(msg.path("portfolioId").asText()), msg.path("range").asInt(5));
+                case "watch" -> {
+                    List<UUID> ids = new ArrayList<>();
+                    for (JsonNode id : msg.path("portfolioIds")) {
+                        ids.add(UUID.fromString(id.asText()));
+                    }
+                    yield ViewSpec.watch(ids);
+                }
+                default -> throw new BadRequestException("Unknown view", null);
+            };
+
+            int rows = switch (spec.type()) {
+                case TOP -> spec.offset() < 0 ? -1 : spec.n();
+                case AROUND -> spec.range() < 0 ? -1 : 2 * spec.range() + 1;
+                case WATCH -> spec.portfolioIds().size();
+            };
+            if (rows < 1 || rows > maxViewRows) {
+                throw new BadRequestException("View size must be 1.." + maxViewRows + " rows", null);
+            }
+            return spec;
+
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid portfolioId", e);
+        }
+    }
+
+    private void sendError(SessionSender sender, String message) {
+        try {
+            sender.offer(new OutboundFrame(format -> encoder.error(format, message)));
+        } catch (Exception e) {
+            log.debug("WS error frame failed session={}", sender.session().getId(), e);
+        }
+    }
+
+    /**
+     * One publish: rows of every distinct view are fetched once (outside the
+     * lock, they may hit Redis), then each view's delta is encoded ONCE per
+     * wire format in use into an immutable frame shared by its subscribers. Unchanged view →
+     * nothing sent. Only enqueues: sends happen per session on
+     * wsSendExecutor, so the slowest client cannot delay the others.
+     *
+     * A view whose rows are outside the replicated range gets one error
+     * frame naming it, and keeps its last rows and seq, until it can be
+     * answered again.
+     */
+    public void publishViews() {
+
+        if (sessions.isEmpty()) {
+            return;
+        }
+
+        List<ViewSpec> specs = views.specs();
+        Map<String, List<LeaderboardDTO>> rows = new LinkedHashMap<>(specs.size() * 2);
+        Map<String, String> outOfRange = new LinkedHashMap<>();
+        for (ViewSpec spec : specs) {
             try {
-                session.sendMessage(
-                        new TextMessage(mapper.writeValueAsString(payload))
-                );
+                rows.put(spec.key(), leaderboardService.fetchView(spec));
+            } catch (OutsideReplicatedRangeException e) {
+                outOfRange.put(spec.key(), e.getMessage());
             } catch (Exception e) {
-                log.warn("WS send failed", e);
+                log.warn("WS view fetch failed view={}", spec.key(), e);
             }
-        });
+        }
+
+        log.debug(" WS publish views={} sessions={}", rows.size(), sessions.size());
+
+        long ts = Instant.now().toEpochMilli();
+        long now = System.nanoTime();
+        long evictAfter = slowSessionEvictMs * 1_000_000;
+        List<SessionSender> stalled = new ArrayList<>();
+
+        synchronized (this) {
+            for (Map.Entry<String, String> e : outOfRange.entrySet()) {
+
+                ViewRegistry.View view = views.get(e.getKey());
+                if (view == null || view.outOfRange != null) {
+                    continue;
+                }
+
+                String key = e.getKey();
+                String message = e.getValue();
+                view.outOfRange = new OutboundFrame(format -> encoder.error(format, key, message));
+                for (SessionSender sender : view.subscribers) {
+                    sender.offer(view.outOfRange);
+                }
+            }
+
+            for (Map.Entry<String, List<LeaderboardDTO>> e : rows.entrySet()) {
+
+                ViewRegistry.View view = views.get(e.getKey());
+                if (view == null) {
+                    continue; // last subscriber left meanwhile
+                }
+                view.outOfRange = null;
+
+                OutboundFrame frame = view.channel.publish(e.getValue(), ts);
+                if (frame == null) {
+                    continue;
+                }
+
+                try {
+                    for (SessionSender sender : view.subscribers) {
+                        if (sender.isStalled(now, evictAfter)) {
+                            stalled.add(sender);
+                        } else if (sender.offer(frame)) {
+                            conflated.increment();
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    // encoding failed: subscribers that missed the seq resync on the next one
+                    log.warn("WS delta encoding failed view={}", e.getKey(), ex);
+                }
+            }
+        }
+
+        for (SessionSender sender : stalled) {
+            evict(sender);
+        }
     }
 
+    private void evict(SessionSender sender) {
+
+        WebSocketSession session = sender.session();
+        if (sessions.remove(session.getId()) == null) {
+            return;
+        }
+
+        synchronized (this) {
+            views.unsubscribeAll(sender);
+        }
+
+        evicted.increment();
+        log.warn("WS session {} slow for > {} ms — evicting", session.getId(), slowSessionEvictMs);
+
+        try {
+            session.close(CloseStatus.SESSION_NOT_RELIABLE);
+        } catch (Exception e) {
+            log.debug("WS close failed session={}", session.getId(), e);
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package com.pms.leaderboard.Handler;
+
+/**
+ * Server → client frame encoding of /ws/updates, picked per session from
+ * the negotiated WebSocket sub-protocol. No sub-protocol → JSON, so
+ * existing clients are unaffected.
+ */
+public enum WireFormat {
+
+    JSON("leaderboard.json.v1"),
+    PROTOBUF("leaderboard.proto.v1");
+
+    private final String subProtocol;
+
+    WireFormat(String subProtocol) {
+        this.subProtocol = subProtocol;
+    }
+
+    public String subProtocol() {
+        return subProtocol;
+    }
+
+    public static WireFormat of(String acceptedProtocol) {
+        return PROTOBUF.subProtocol.equals(acceptedProtocol) ? PROTOBUF : JSON;
+    }
+}
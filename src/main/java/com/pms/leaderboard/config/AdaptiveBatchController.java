@@ -0,0 +1,176 @@
+package com.pms.leaderboard.config;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * Tunes EventBuffer batch size and linger time at runtime.
+ *
+ * Inputs, per control tick: arrival rate, downstream (Redis write) p99 and
+ * end-to-end p99 (Kafka receive → Redis applied).
+ *
+ * - batch size: enough events to keep up with arrivals while one write per
+ *   shard is in flight (Little's law, x2 headroom): 2 * rate * redisP99.
+ * - linger: 0 when less than one event per shard arrives per Redis round
+ *   trip (waiting cannot fill a batch), otherwise the time to fill a batch,
+ *   capped by half of whatever the p99 target leaves after the Redis p99.
+ * - feedback: when the measured end-to-end p99 exceeds the target, linger
+ *   is scaled down multiplicatively; it recovers additively below target.
+ */
+@Component
+public class AdaptiveBatchController {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveBatchController.class);
+
+    @Value("${app.leaderboard.batching.target-p99-ms:250}")
+    private long targetP99Ms;
+
+    @Value("${app.leaderboard.batching.min-batch:10}")
+    private int minBatch;
+
+    @Value("${app.leaderboard.batching.max-batch:500}")
+    private int maxBatch;
+
+    @Value("${app.leaderboard.batching.max-linger-ms:2000}")
+    private long maxLingerMs;
+
+    @Value("${app.leaderboard.buffer.shards:0}")
+    private int configuredShards;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final LongAdder arrivals = new LongAdder();
+    private long lastTickNanos = System.nanoTime();
+
+    private Timer redisLatency;
+    private Timer endToEndLatency;
+
+    // decisions, read by every shard on every drain
+    private volatile int batchSize;
+    private volatile long lingerMs;
+
+    // observations / feedback state, exposed as gauges
+    private volatile double arrivalRate;
+    private volatile double feedback = 1.0;
+
+    @PostConstruct
+    public void init() {
+
+        batchSize = minBatch;
+        lingerMs = 0;
+
+        redisLatency = Timer.builder("leaderboard.redis.write.latency")
+                .description("Shard submit → Redis batch write completed")
+                .publishPercentiles(0.99)
+                .distributionStatisticExpiry(Duration.ofSeconds(10))
+                .register(meterRegistry);
+
+        endToEndLatency = Timer.builder("leaderboard.e2e.latency")
+                .description("Kafka receive → Redis applied, oldest event in batch")
+                .publishPercentiles(0.99)
+                .distributionStatisticExpiry(Duration.ofSeconds(10))
+                .register(meterRegistry);
+
+        Gauge.builder("leaderboard.batching.batch-size", this, c -> c.batchSize)
+                .description("Current adaptive max batch size per shard")
+                .register(meterRegistry);
+        Gauge.builder("leaderboard.batching.linger-ms", this, c -> c.lingerMs)
+                .description("Current adaptive linger per batch")
+                .register(meterRegistry);
+        Gauge.builder("leaderboard.batching.arrival-rate", this, c -> c.arrivalRate)
+                .description("Observed events/s entering EventBuffer")
+                .register(meterRegistry);
+        Gauge.builder("leaderboard.batching.feedback", this, c -> c.feedback)
+                .description("Linger scale from end-to-end p99 feedback (1 = on target)")
+                .register(meterRegistry);
+        Gauge.builder("leaderboard.batching.target-p99-ms", this, c -> c.targetP99Ms)
+                .register(meterRegistry);
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public long lingerMs() {
+        return lingerMs;
+    }
+
+    public void recordArrivals(int count) {
+        arrivals.add(count);
+    }
+
+    public void recordWrite(long submittedNanos, long oldestEventMillis) {
+        redisLatency.record(System.nanoTime() - submittedNanos, TimeUnit.NANOSECONDS);
+        endToEndLatency.record(
+                Math.max(0, System.currentTimeMillis() - oldestEventMillis), TimeUnit.MILLISECONDS);
+    }
+
+    @Scheduled(fixedRate = 1000)
+    public void adjust() {
+
+        long now = System.nanoTime();
+        double seconds = (now - lastTickNanos) / 1e9;
+        lastTickNanos = now;
+        arrivalRate = arrivals.sumThenReset() / Math.max(seconds, 1e-3);
+
+        int shards = configuredShards > 0
+                ? configuredShards
+                : Runtime.getRuntime().availableProcessors();
+        double perShardRate = arrivalRate / shards;
+
+        double redisP99Ms = p99Ms(redisLatency);
+        double e2eP99Ms = p99Ms(endToEndLatency);
+
+        // ---- feedback (AIMD on linger) ----
+        if (e2eP99Ms > targetP99Ms) {
+            feedback = Math.max(0.1, feedback * 0.5);
+        } else {
+            feedback = Math.min(1.0, feedback + 0.1);
+        }
+
+        // ---- batch size ----
+        double inFlightEvents = perShardRate * Math.max(redisP99Ms, 1) / 1000.0;
+        int size = (int) Math.ceil(2 * inFlightEvents);
+        batchSize = Math.max(minBatch, Math.min(maxBatch, size));
+
+        // ---- linger ----
+        long linger;
+        if (inFlightEvents < 1) {
+            linger = 0;
+        } else {
+            double budgetMs = Math.max(0, targetP99Ms - redisP99Ms) / 2;
+            double fillMs = batchSize / perShardRate * 1000.0;
+            linger = (long) (Math.min(budgetMs, fillMs) * feedback);
+        }
+        lingerMs = Math.max(0, Math.min(maxLingerMs, linger));
+
+        log.debug("Batching rate={}/s redisP99={}ms e2eP99={}ms → batch={} linger={}ms feedback={}",
+                Math.round(arrivalRate), Math.round(redisP99Ms), Math.round(e2eP99Ms),
+                batchSize, lingerMs, feedback);
+    }
+
+    private static double p99Ms(Timer timer) {
+        for (ValueAtPercentile v : timer.takeSnapshot().percentileValues()) {
+            if (v.percentile() == 0.99) {
+                return v.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,186 @@
+package com.pms.leaderboard.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.pms.leaderboard.dto.MessageDTO;
+
+/**
+ * Latest-value-wins buffer keyed by portfolio.
+ *
+ * A newer event for a portfolio that is already pending replaces the pending
+ * one in place; only the first event for a clean portfolio enqueues its key
+ * into the dirty ring. Memory is therefore bounded by the number of distinct
+ * dirty portfolios, not by the event rate.
+ *
+ * Invariant: every key in {@code pending} sits in exactly one of
+ * {@code dirty} / {@code requeued}, and is removed from {@code pending} only
+ * by the drainer. Many producers, ONE drainer.
+ *
+ * A batch whose asynchronous write failed is handed back from any thread
+ * ({@link #giveBack}) and merged by the drainer, so its events keep their
+ * offset tokens until a retry succeeds.
+ */
+public class CoalescingBuffer {
+
+    // wakes a drainer blocked on an empty ring; compared by identity, never pending
+    private static final UUID WAKE = new UUID(0, 0);
+
+    private final ConcurrentHashMap<UUID, MessageDTO> pending;
+
+    // ring of dirty keys, bounded → producers block when full
+    private final ArrayBlockingQueue<UUID> dirty;
+
+    // drainer-thread only: keys put back after a failed batch
+    private final ArrayDeque<UUID> requeued = new ArrayDeque<>();
+
+    // any thread: events of failed writes, merged back by the drainer
+    private final ConcurrentLinkedQueue<MessageDTO> returned = new ConcurrentLinkedQueue<>();
+
+    // drainer-thread only: reused scratch for a drain cycle
+    private final List<UUID> keys;
+
+    public CoalescingBuffer(int capacity, int maxBatch) {
+        this.pending = new ConcurrentHashMap<>(capacity);
+        this.dirty = new ArrayBlockingQueue<>(capacity);
+        this.keys = new ArrayList<>(maxBatch);
+    }
+
+    /**
+     * Overwrites the pending event for this portfolio, or marks the portfolio
+     * dirty. BLOCKS when {@code capacity} distinct portfolios are dirty.
+     */
+    public void put(MessageDTO event) throws InterruptedException {
+        UUID pid = event.getPortfolioId();
+        MessageDTO superseded = pending.put(pid, event);
+        if (superseded == null) {
+            dirty.put(pid);
+        } else {
+            superseded.release();
+        }
+    }
+
+    /**
+     * Waits for the first dirty portfolio, then lingers up to
+     * {@code lingerMs} until {@code maxBatch} keys are collected. Latest
+     * events are appended to {@code out}, which the caller owns and reuses.
+     */
+    public int drain(List<MessageDTO> out, int maxBatch, long lingerMs) throws InterruptedException {
+
+        while (keys.isEmpty()) {
+
+            // nothing drained is unwritten here, so nothing newer is in flight
+            reclaim(List.of());
+
+            while (!requeued.isEmpty() && keys.size() < maxBatch) {
+                keys.add(requeued.poll());
+            }
+
+            if (keys.isEmpty()) {
+                UUID next = dirty.take();
+                if (next != WAKE) {
+                    keys.add(next);
+                }
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+
+        while (keys.size() < maxBatch) {
+            if (dirty.drainTo(keys, maxBatch - keys.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            UUID next = dirty.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next != null) {
+                keys.add(next);
+            }
+        }
+
+        int added = 0;
+        for (UUID pid : keys) {
+            if (pid == WAKE) {
+                continue;
+            }
+            MessageDTO latest = pending.remove(pid);
+            if (latest != null) {
+                out.add(latest);
+                added++;
+            }
+        }
+        keys.clear();
+        return added;
+    }
+
+    /**
+     * Puts a failed batch back. Skips portfolios that already received a
+     * newer event meanwhile. Drainer thread only.
+     */
+    public void requeue(List<MessageDTO> batch) {
+        for (MessageDTO m : batch) {
+            requeue(m);
+        }
+    }
+
+    private void requeue(MessageDTO m) {
+        if (pending.putIfAbsent(m.getPortfolioId(), m) == null) {
+            requeued.add(m.getPortfolioId());
+        } else {
+            m.release();
+        }
+    }
+
+    /**
+     * Any thread: hands back a batch whose write failed after it left the
+     * drainer. Requeued by the next {@link #drain} or {@link #reclaim}.
+     */
+    public void giveBack(MessageDTO[] batch) {
+        Collections.addAll(returned, batch);
+        dirty.offer(WAKE); // ring full → the drainer is not blocked anyway
+    }
+
+    /**
+     * Requeues handed-back events, except portfolios in {@code inHand}: a
+     * batch drained after them, so its events are newer. Drainer thread only.
+     */
+    public void reclaim(List<MessageDTO> inHand) {
+
+        if (returned.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> newer = new HashSet<>();
+        for (MessageDTO m : inHand) {
+            newer.add(m.getPortfolioId());
+        }
+
+        MessageDTO m;
+        while ((m = returned.poll()) != null) {
+            if (newer.contains(m.getPortfolioId())) {
+                m.release();
+            } else {
+                requeue(m);
+            }
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public boolean isEmpty() {
+        return pending.isEmpty();
+    }
+}
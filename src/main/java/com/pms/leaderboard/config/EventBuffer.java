@@ -2,9 +2,9 @@ package com.pms.leaderboard.config;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 import jakarta.annotation.PostConstruct;
 
@@ -12,105 +12,243 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.pms.leaderboard.dto.MessageDTO;
+import com.pms.leaderboard.dto.RiskEventColumns;
 import com.pms.leaderboard.services.LeaderboardService;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Component
 public class EventBuffer {
 
     private static final Logger log = LoggerFactory.getLogger(EventBuffer.class);
 
-    private static final int QUEUE_CAPACITY = 10_000;
-    private static final int BATCH_SIZE = 50;
-    private static final long FLUSH_INTERVAL_MS = 2000;
+    // 0 → one shard per core
+    @Value("${app.leaderboard.buffer.shards:0}")
+    private int configuredShards;
+
+    // max distinct dirty portfolios per shard, not max events
+    @Value("${app.leaderboard.buffer.shard-capacity:2000}")
+    private int shardCapacity;
 
-    private final BlockingQueue<MessageDTO> queue
-            = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private Shard[] shards;
 
     @Autowired
     private LeaderboardService leaderboardService;
 
+    // batch size + linger, retuned every second from rate and latency
+    @Autowired
+    private AdaptiveBatchController batching;
+
     @Autowired
     @Qualifier("processExecutor")
-    private java.util.concurrent.ExecutorService processExecutor;
+    private ExecutorService processExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
-     * Kafka → EventBuffer BLOCKS when full → Kafka backpressure
+     * Kafka → EventBuffer BLOCKS when the portfolio's shard is full → Kafka
+     * backpressure. Newer events overwrite the pending one for the same
+     * portfolio.
      */
     public void addAll(List<MessageDTO> events) {
+        batching.recordArrivals(events.size());
         for (MessageDTO event : events) {
-            try {
-                queue.put(event); // blocks
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("Interrupted while buffering", e);
-            }
+            buffer(event);
         }
-        log.debug("Buffered {} events, bufferSize={}", events.size(), queue.size());
+        log.debug("Buffered {} events, bufferSize={}", events.size(), size());
     }
 
     /**
-     * Background consumer
+     * Same as {@link #addAll(List)} for a decoded column batch (RAW ingest).
+     */
+    public void addAll(RiskEventColumns events) {
+        long receivedAt = System.currentTimeMillis();
+        batching.recordArrivals(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            MessageDTO event = new MessageDTO(
+                    new UUID(events.pidMsb(i), events.pidLsb(i)),
+                    events.sharpeRatio(i),
+                    events.sortinoRatio(i),
+                    events.avgRateOfReturn(i),
+                    receivedAt,
+                    events.source(i)
+            );
+            buffer(event);
+        }
+        log.debug("Buffered {} events, bufferSize={}", events.size(), size());
+    }
+
+    private void buffer(MessageDTO event) {
+        // the offset watermark waits for this event until it is released
+        if (event.getSource() != null) {
+            event.getSource().retain();
+        }
+        try {
+            shardFor(event.getPortfolioId()).buffer.put(event); // blocks
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while buffering", e);
+        }
+    }
+
+    /**
+     * One consumer loop per shard. A portfolio always hashes to the same
+     * shard, so its updates are drained and written in order.
      */
     @PostConstruct
     public void startConsumer() {
-        processExecutor.submit(this::consumeLoop);
+
+        int count = configuredShards > 0
+                ? configuredShards
+                : Runtime.getRuntime().availableProcessors();
+
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+        }
+
+        Gauge.builder("leaderboard.buffer.shards", shards, s -> s.length)
+                .description("Number of EventBuffer shards")
+                .register(meterRegistry);
+
+        for (Shard shard : shards) {
+            Gauge.builder("leaderboard.buffer.depth", shard.buffer, CoalescingBuffer::size)
+                    .description("Dirty portfolios waiting in the shard")
+                    .tag("shard", String.valueOf(shard.id))
+                    .register(meterRegistry);
+
+            Gauge.builder("leaderboard.buffer.capacity", shard, s -> shardCapacity)
+                    .description("Max dirty portfolios per shard")
+                    .tag("shard", String.valueOf(shard.id))
+                    .register(meterRegistry);
+
+            processExecutor.submit(shard::consumeLoop);
+        }
+
+        log.info(" EventBuffer started shards={} shardCapacity={}", count, shardCapacity);
     }
 
-    private void consumeLoop() {
+    private Shard shardFor(UUID pid) {
+        // spread: UUID.hashCode folds both halves, mix the high bits down
+        int h = pid.hashCode();
+        h ^= (h >>> 16);
+        return shards[Math.floorMod(h, shards.length)];
+    }
 
-        List<MessageDTO> batch = new ArrayList<>(BATCH_SIZE);
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            total += shard.buffer.size();
+        }
+        return total;
+    }
 
-        while (true) {
-            try {
-                // wait for first event
-                MessageDTO first = queue.take();
-                batch.add(first);
+    /**
+     * Fullest shard's fill ratio, 0..1; a full shard blocks the listener.
+     */
+    public double fill() {
+        double max = 0;
+        for (Shard shard : shards) {
+            max = Math.max(max, (double) shard.buffer.size() / shardCapacity);
+        }
+        return max;
+    }
+
+    public boolean isEmpty() {
+        for (Shard shard : shards) {
+            if (!shard.buffer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-                long start = System.currentTimeMillis();
+    private final class Shard {
 
-                while (batch.size() < BATCH_SIZE
-                        && (System.currentTimeMillis() - start) < FLUSH_INTERVAL_MS) {
+        private final int id;
+        private final CoalescingBuffer buffer;
 
-                    MessageDTO next = queue.poll(100, TimeUnit.MILLISECONDS);
-                    if (next != null) {
-                        batch.add(next);
-                    }
-                }
+        // previous Redis write of this shard; the next one waits for it so
+        // a portfolio's updates can never overtake each other
+        private CompletableFuture<Void> inFlight = CompletableFuture.completedFuture(null);
 
-                List<MessageDTO> toProcess = new ArrayList<>(batch);
-                batch.clear();
+        private Shard(int id) {
+            this.id = id;
+            this.buffer = new CoalescingBuffer(shardCapacity, batching.batchSize());
+        }
 
-                leaderboardService.processBatch(toProcess);
+        private void consumeLoop() {
 
-            } catch (Exception e) {
+            Thread.currentThread().setName("process-shard-" + id);
 
-                log.error("EventBuffer consumer failure — requeueing batch", e);
+            List<MessageDTO> batch = new ArrayList<>(batching.batchSize());
 
-                for (MessageDTO msg : batch) {
+            while (true) {
+                try {
+                    buffer.drain(batch, batching.batchSize(), batching.lingerMs());
+
+                    long oldest = Long.MAX_VALUE;
+                    for (MessageDTO m : batch) {
+                        oldest = Math.min(oldest, m.getTimeStamp());
+                    }
+
+                    // released only once Redis has them → offset watermarks
+                    MessageDTO[] written = batch.toArray(MessageDTO[]::new);
+
+                    awaitInFlight(batch);
+                    long submitted = System.nanoTime();
+                    long oldestEvent = oldest;
+                    inFlight = leaderboardService.processBatch(batch)
+                            .whenComplete((ignored, failure) -> {
+                                if (failure != null) {
+                                    // still holding their tokens → the watermark waits for the retry
+                                    log.warn("EventBuffer shard {} write failed after retries — requeueing {} events",
+                                            id, written.length);
+                                    buffer.giveBack(written);
+                                    return;
+                                }
+                                batching.recordWrite(submitted, oldestEvent);
+                                for (MessageDTO m : written) {
+                                    m.release();
+                                }
+                            });
+                    batch.clear();
+
+                } catch (Exception e) {
+
+                    log.error("EventBuffer shard {} failure — requeueing batch", id, e);
+
+                    buffer.requeue(batch); // newer pending events win
+                    batch.clear();
+
+                    // small pause prevents hot failure loop
                     try {
-                        queue.put(msg); // put back
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
+                        Thread.sleep(500);
+                    } catch (InterruptedException ignored) {
                     }
                 }
 
-                batch.clear();
-
-                // small pause prevents hot failure loop
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException ignored) {
-                }
             }
-
         }
-    }
 
-    public boolean isEmpty() {
-        return queue.isEmpty();
+        /**
+         * Waits for the previous write; if it failed, its events go back to
+         * the buffer unless {@code next} (drained after it) is newer.
+         */
+        private void awaitInFlight(List<MessageDTO> next) {
+            try {
+                inFlight.join();
+            } catch (Exception e) {
+                // already logged by the writer after its retries
+                buffer.reclaim(next);
+            }
+        }
     }
 
 }
@@ -5,12 +5,47 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+/**
+ * Platform pools by default. With spring.threads.virtual.enabled=true (which
+ * also moves Tomcat request handling onto virtual threads) every pool
+ * becomes a {@link VirtualThreadExecutor}: concurrency is bounded by a
+ * semaphore and the former queue size becomes the waiting backlog.
+ */
 @Configuration
 public class ExecutorConfig {
 
+    // EventBuffer parks one consumer loop per shard on processExecutor
+    @Value("${app.leaderboard.buffer.shards:0}")
+    private int bufferShards;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // virtual mode only: blocking I/O in flight at once
+    @Value("${app.executors.virtual.redis-concurrency:64}")
+    private int redisConcurrency;
+
+    @Value("${app.executors.virtual.db-concurrency:10}")
+    private int dbConcurrency;
+
+    @Value("${app.executors.virtual.realtime-concurrency:16}")
+    private int realtimeConcurrency;
+
+    // LeaderboardStreamConsumer parks workers + 1 (retry) loops on dbExecutor
+    @Value("${app.leaderboard.persist.workers:2}")
+    private int persistWorkers;
+
+    // one drain task per session at most; a blocked send holds a thread
+    @Value("${app.websocket.send-threads:32}")
+    private int wsSendThreads;
+
+    @Value("${app.websocket.max-sessions:10000}")
+    private int wsMaxSessions;
+
     /**
      * Generic bounded pool creator. Forces deterministic capacity.
      */
@@ -19,6 +54,19 @@ public class ExecutorConfig {
             int queueSize,
             String threadName
     ) {
+        return boundedExecutor(threads, threads, queueSize, threadName);
+    }
+
+    private ExecutorService boundedExecutor(
+            int threads,
+            int virtualConcurrency,
+            int queueSize,
+            String threadName
+    ) {
+
+        if (virtualThreads) {
+            return new VirtualThreadExecutor(threadName, virtualConcurrency, queueSize);
+        }
 
         return new ThreadPoolExecutor(
                 threads,
@@ -42,6 +90,7 @@ public class ExecutorConfig {
     public ExecutorService realtimeExecutor() {
         return boundedExecutor(
                 4, // CPU aligned
+                realtimeConcurrency,
                 500, // small queue → protects latency
                 "realtime"
         );
@@ -54,32 +103,64 @@ public class ExecutorConfig {
     public ExecutorService redisExecutor() {
         return boundedExecutor(
                 8, // IO threads > CPU is OK
+                redisConcurrency,
                 5000, // shock absorber
                 "redis"
         );
     }
 
     /**
-     * CPU deterministic work. NEVER allow infinite waiting here.
+     * CPU deterministic work. NEVER allow infinite waiting here. Sized so
+     * every EventBuffer shard gets its own thread.
      */
     @Bean(name = "processExecutor")
     public ExecutorService processExecutor() {
         return boundedExecutor(
-                Runtime.getRuntime().availableProcessors(),
+                Math.max(Runtime.getRuntime().availableProcessors(), bufferShards),
                 1000,
                 "process"
         );
     }
 
     /**
-     * DB → limited connections anyway. Keep queue controlled.
+     * DB → limited connections anyway. Keep queue controlled. One thread
+     * per stream consumer loop; keep workers below the JDBC pool size.
      */
     @Bean(name = "dbExecutor")
     public ExecutorService dbExecutor() {
+        int loops = Math.max(1, persistWorkers) + 1;
         return boundedExecutor(
-                2,
+                loops,
+                Math.max(dbConcurrency, loops), // ≤ JDBC pool size; loops never wait for a permit
                 500,
                 "db"
         );
     }
+
+    /**
+     * SnapshotKeyframes builds: minutes of INSERT … SELECT at worst, kept off
+     * the scheduler threads. One build at a time.
+     */
+    @Bean(name = "keyframeExecutor")
+    public ExecutorService keyframeExecutor() {
+        return boundedExecutor(
+                1,
+                1,
+                "keyframe"
+        );
+    }
+
+    /**
+     * WebSocket sends → per-session drain tasks. Slow clients are evicted by
+     * WebSocketHandler, so a thread is never held for long.
+     */
+    @Bean(name = "wsSendExecutor")
+    public ExecutorService wsSendExecutor() {
+        return boundedExecutor(
+                wsSendThreads,
+                wsMaxSessions, // virtual: every session drains concurrently
+                wsMaxSessions,
+                "ws-send"
+        );
+    }
 }
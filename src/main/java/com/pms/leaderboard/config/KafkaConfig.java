@@ -5,11 +5,13 @@
 
     import org.apache.kafka.clients.consumer.ConsumerConfig;
     import org.apache.kafka.clients.producer.ProducerConfig;
+    import org.apache.kafka.common.serialization.ByteArrayDeserializer;
     import org.apache.kafka.common.serialization.StringDeserializer;
     import org.apache.kafka.common.serialization.StringSerializer;
     import org.springframework.beans.factory.annotation.Value;
     import org.springframework.context.annotation.Bean;
     import org.springframework.context.annotation.Configuration;
+    import org.springframework.context.annotation.Primary;
     import org.springframework.kafka.annotation.EnableKafka;
     import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
     import org.springframework.kafka.core.ConsumerFactory;
@@ -58,30 +60,24 @@
             return new KafkaTemplate<>(riskEventProducerFactory());
         }
 
-        @Bean
-        public ConsumerFactory<String, RiskEvent> consumerFactory() {
+        private Map<String, Object> baseConsumerConfig() {
             Map<String, Object> config = new HashMap<>();
             config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
             config.put(ConsumerConfig.GROUP_ID_CONFIG, "leaderboard-group");
 
             config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-            config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaProtobufDeserializer.class);
-            config.put("schema.registry.url", schemaRegistryUrl);
-            config.put("auto.register.schemas", false);
-            config.put("specific.protobuf.value.type", RiskEvent.class.getName());
             config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
             config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
             config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100);
             config.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 200);
             config.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 100);
-            
-            return new DefaultKafkaConsumerFactory<>(config);
+            return config;
         }
 
-        @Bean
-        public ConcurrentKafkaListenerContainerFactory<String, RiskEvent> kafkaListenerContainerFactory() {
-            ConcurrentKafkaListenerContainerFactory<String, RiskEvent> factory = new ConcurrentKafkaListenerContainerFactory<>();
-            factory.setConsumerFactory(consumerFactory());
+        private <V> ConcurrentKafkaListenerContainerFactory<String, V> batchListenerFactory(
+                ConsumerFactory<String, V> consumerFactory) {
+            ConcurrentKafkaListenerContainerFactory<String, V> factory = new ConcurrentKafkaListenerContainerFactory<>();
+            factory.setConsumerFactory(consumerFactory);
 
             factory.setBatchListener(true);
             factory.setCommonErrorHandler(
@@ -94,6 +90,38 @@
             factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
             return factory;
         }
+
+        // ---------- CONFLUENT INGEST: full RiskEvent per record ----------
+        @Bean
+        @Primary
+        public ConsumerFactory<String, RiskEvent> consumerFactory() {
+            Map<String, Object> config = baseConsumerConfig();
+            config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, KafkaProtobufDeserializer.class);
+            config.put("schema.registry.url", schemaRegistryUrl);
+            config.put("auto.register.schemas", false);
+            config.put("specific.protobuf.value.type", RiskEvent.class.getName());
+
+            return new DefaultKafkaConsumerFactory<>(config);
+        }
+
+        @Bean
+        public ConcurrentKafkaListenerContainerFactory<String, RiskEvent> kafkaListenerContainerFactory() {
+            return batchListenerFactory(consumerFactory());
+        }
+
+        // ---------- RAW INGEST: undecoded bytes, see RiskEventWireDecoder ----------
+        @Bean
+        public ConsumerFactory<String, byte[]> rawConsumerFactory() {
+            Map<String, Object> config = baseConsumerConfig();
+            config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+
+            return new DefaultKafkaConsumerFactory<>(config);
+        }
+
+        @Bean
+        public ConcurrentKafkaListenerContainerFactory<String, byte[]> rawKafkaListenerContainerFactory() {
+            return batchListenerFactory(rawConsumerFactory());
+        }
     }
 
     //test commit
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.pms.leaderboard.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class RedisPubSubConfig {
+
+    /**
+     * One dispatch thread: listeners see a channel's messages in publish
+     * order (the replication feed relies on it).
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+
+        ThreadPoolTaskExecutor dispatch = new ThreadPoolTaskExecutor();
+        dispatch.setCorePoolSize(1);
+        dispatch.setMaxPoolSize(1);
+        dispatch.setThreadNamePrefix("redis-pubsub-");
+        dispatch.initialize();
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(dispatch);
+        return container;
+    }
+}
@@ -0,0 +1,88 @@
+package com.pms.leaderboard.config;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One virtual thread per task, bounded by semaphores instead of a worker
+ * count + queue.
+ *
+ * - {@code concurrency}: tasks running at once (Redis connections, JDBC
+ *   pool). Extra tasks park their virtual thread on the semaphore, which
+ *   costs a few hundred bytes, not a platform thread.
+ * - {@code backlog}: tasks allowed to wait for a permit. Beyond
+ *   concurrency + backlog, submit throws RejectedExecutionException, same
+ *   contract as the platform pools' AbortPolicy.
+ */
+public class VirtualThreadExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore running;
+    private final Semaphore admitted;
+
+    public VirtualThreadExecutor(String name, int concurrency, int backlog) {
+        this.delegate = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(name + "-v-", 0).factory());
+        this.running = new Semaphore(concurrency);
+        this.admitted = new Semaphore(concurrency + backlog);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+
+        if (!admitted.tryAcquire()) {
+            throw new RejectedExecutionException("Virtual executor saturated");
+        }
+
+        try {
+            delegate.execute(() -> {
+                try {
+                    running.acquire();
+                } catch (InterruptedException e) {
+                    admitted.release();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
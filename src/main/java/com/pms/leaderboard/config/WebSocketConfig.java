@@ -1,10 +1,16 @@
 package com.pms.leaderboard.config;
 
+import java.util.List;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
 
 import com.pms.leaderboard.Handler.WebSocketHandler;
 
@@ -15,9 +21,32 @@ public class WebSocketConfig implements WebSocketConfigurer  {
     @Autowired
     WebSocketHandler handler;
 
+    // Tomcat negotiates permessage-deflate whenever the client offers it.
+    // Compression runs per session and per frame, so shared frames are no
+    // longer encoded once: trade CPU for bandwidth deliberately.
+    @Value("${app.websocket.permessage-deflate:true}")
+    private boolean permessageDeflate;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(handler, "/ws/updates")
+                .setHandshakeHandler(new DefaultHandshakeHandler() {
+                    @Override
+                    protected List<WebSocketExtension> filterRequestedExtensions(
+                            ServerHttpRequest request,
+                            List<WebSocketExtension> requested,
+                            List<WebSocketExtension> supported) {
+
+                        List<WebSocketExtension> accepted =
+                                super.filterRequestedExtensions(request, requested, supported);
+                        if (permessageDeflate) {
+                            return accepted;
+                        }
+                        return accepted.stream()
+                                .filter(e -> !"permessage-deflate".equalsIgnoreCase(e.getName()))
+                                .toList();
+                    }
+                })
                 .setAllowedOrigins("*");
     }
 }
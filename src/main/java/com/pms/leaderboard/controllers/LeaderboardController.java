@@ -1,14 +1,20 @@
 package com.pms.leaderboard.controllers;
 
+import java.io.IOException;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.pms.leaderboard.services.LeaderboardService;
+import com.pms.leaderboard.services.SnapshotAsOfService;
+import com.pms.leaderboard.services.SnapshotHistoryService;
+
+import jakarta.servlet.http.HttpServletResponse;
 
 @RestController
 @RequestMapping("/api/leaderboard")
@@ -17,6 +23,12 @@ public class LeaderboardController {
     @Autowired
     private LeaderboardService leaderboardService;
 
+    @Autowired
+    private SnapshotHistoryService historyService;
+
+    @Autowired
+    private SnapshotAsOfService asOfService;
+
     // GET /api/leaderboard/top?top=100
     
     @GetMapping("/top")
@@ -35,4 +47,36 @@ public class LeaderboardController {
 
         return leaderboardService.getAround(portfolioId, range);
     }
+
+    //GET /api/leaderboard/history?portfolioId=<uuid>&from=<iso>&to=<iso>&step=1h
+
+    @GetMapping("/history")
+    public void getHistory(
+            @RequestParam String portfolioId,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String step,
+            HttpServletResponse response) throws IOException {
+
+        SnapshotHistoryService.HistoryQuery query = historyService.query(portfolioId, from, to, step);
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        historyService.writeHistory(query, response.getOutputStream());
+    }
+
+    //GET /api/leaderboard/asof?at=<iso>&top=100&offset=0
+    //GET /api/leaderboard/asof?at=<iso>&portfolioId=<uuid>&range=10
+
+    @GetMapping("/asof")
+    public Map<String, Object> getAsOf(
+            @RequestParam String at,
+            @RequestParam(required = false) String portfolioId,
+            @RequestParam(defaultValue = "50") int top,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "5") int range) {
+
+        return portfolioId == null
+                ? asOfService.top(at, offset, top)
+                : asOfService.around(at, portfolioId, range);
+    }
 }
@@ -1,6 +1,7 @@
 package com.pms.leaderboard.dto;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
@@ -19,4 +20,7 @@ public class BatchDTO {
     private BigDecimal avgRateOfReturn;
     private BigDecimal sharpeRatio;
     private BigDecimal sortinoRatio;
+    // when Redis applied the update (stream entry updatedAt); stored as
+    // event_at, updated_at is the write time
+    private Instant eventAt;
 }
@@ -1,6 +1,5 @@
 package com.pms.leaderboard.dto;
 
-import java.math.BigDecimal;
 import java.util.UUID;
 
 import lombok.AllArgsConstructor;
@@ -15,8 +14,8 @@ public class LeaderboardDTO {
     private long rank;
     private UUID portfolioId;
     private double compositeScore;
-    private BigDecimal avgReturn;
-    private BigDecimal sharpe;
-    private BigDecimal sortino;
+    private double avgReturn;
+    private double sharpe;
+    private double sortino;
     private String updated;
 }
@@ -1,20 +1,38 @@
 package com.pms.leaderboard.dto;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.UUID;
 
+import com.pms.leaderboard.services.OffsetWatermarks;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * One risk event on the hot path. Primitive doubles only — BigDecimal is
+ * reserved for the Postgres boundary (BatchDTO).
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class MessageDTO {
     private UUID portfolioId;
-    private BigDecimal sharpeRatio;
-    private BigDecimal sortinoRatio;
-    private BigDecimal avgRateOfReturn;
-    private LocalDateTime timeStamp;
+    private double sharpeRatio;
+    private double sortinoRatio;
+    private double avgRateOfReturn;
+    private long timeStamp; // epoch millis
+
+    // Kafka poll this event came from; released once applied or superseded
+    private OffsetWatermarks.Token source;
+
+    public MessageDTO(UUID portfolioId, double sharpeRatio, double sortinoRatio,
+            double avgRateOfReturn, long timeStamp) {
+        this(portfolioId, sharpeRatio, sortinoRatio, avgRateOfReturn, timeStamp, null);
+    }
+
+    public void release() {
+        if (source != null) {
+            source.release();
+        }
+    }
 }
@@ -0,0 +1,19 @@
+package com.pms.leaderboard.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One downsampled point of a portfolio's history: the latest snapshot (by
+ * event time, eventMs) written in the bucket starting at bucketMs (epoch
+ * millis).
+ */
+public interface RankHistoryPoint {
+
+    long getBucketMs();
+
+    long getEventMs();
+
+    long getRank();
+
+    BigDecimal getScore();
+}
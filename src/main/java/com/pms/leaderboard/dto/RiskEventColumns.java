@@ -0,0 +1,79 @@
+package com.pms.leaderboard.dto;
+
+import java.util.Arrays;
+
+import com.pms.leaderboard.services.OffsetWatermarks;
+
+/**
+ * Column-oriented batch of decoded RiskEvents. One instance per listener
+ * thread, reused across polls; arrays only grow.
+ */
+public class RiskEventColumns {
+
+    private long[] pidMsb;
+    private long[] pidLsb;
+    private double[] avgRateOfReturn;
+    private double[] sharpeRatio;
+    private double[] sortinoRatio;
+    private OffsetWatermarks.Token[] source;
+    private int size;
+
+    public RiskEventColumns(int capacity) {
+        pidMsb = new long[capacity];
+        pidLsb = new long[capacity];
+        avgRateOfReturn = new double[capacity];
+        sharpeRatio = new double[capacity];
+        sortinoRatio = new double[capacity];
+        source = new OffsetWatermarks.Token[capacity];
+    }
+
+    public void reset(int expected) {
+        size = 0;
+        if (pidMsb.length < expected) {
+            pidMsb = Arrays.copyOf(pidMsb, expected);
+            pidLsb = Arrays.copyOf(pidLsb, expected);
+            avgRateOfReturn = Arrays.copyOf(avgRateOfReturn, expected);
+            sharpeRatio = Arrays.copyOf(sharpeRatio, expected);
+            sortinoRatio = Arrays.copyOf(sortinoRatio, expected);
+            source = Arrays.copyOf(source, expected);
+        }
+    }
+
+    public void add(long msb, long lsb, double avg, double sharpe, double sortino, OffsetWatermarks.Token token) {
+        pidMsb[size] = msb;
+        pidLsb[size] = lsb;
+        avgRateOfReturn[size] = avg;
+        sharpeRatio[size] = sharpe;
+        sortinoRatio[size] = sortino;
+        source[size] = token;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long pidMsb(int i) {
+        return pidMsb[i];
+    }
+
+    public long pidLsb(int i) {
+        return pidLsb[i];
+    }
+
+    public double avgRateOfReturn(int i) {
+        return avgRateOfReturn[i];
+    }
+
+    public double sharpeRatio(int i) {
+        return sharpeRatio[i];
+    }
+
+    public double sortinoRatio(int i) {
+        return sortinoRatio[i];
+    }
+
+    public OffsetWatermarks.Token source(int i) {
+        return source[i];
+    }
+}
@@ -0,0 +1,51 @@
+package com.pms.leaderboard.dto;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * A leaderboard slice a WebSocket client subscribes to. Equal specs have
+ * equal {@link #key()}s, which is what subscriptions are shared by.
+ *
+ * TOP    ranks offset+1 .. offset+n
+ * AROUND portfolioId's rank ± range
+ * WATCH  the given portfolios, in rank order
+ */
+public record ViewSpec(
+        Type type,
+        int offset,
+        int n,
+        UUID portfolioId,
+        int range,
+        List<UUID> portfolioIds
+) {
+
+    public enum Type {
+        TOP, AROUND, WATCH
+    }
+
+    public static ViewSpec top(int offset, int n) {
+        return new ViewSpec(Type.TOP, offset, n, null, 0, List.of());
+    }
+
+    public static ViewSpec around(UUID portfolioId, int range) {
+        return new ViewSpec(Type.AROUND, 0, 0, portfolioId, range, List.of());
+    }
+
+    // sorted + distinct so the same set always yields the same key
+    public static ViewSpec watch(List<UUID> portfolioIds) {
+        return new ViewSpec(Type.WATCH, 0, 0, null, 0,
+                portfolioIds.stream().distinct().sorted().toList());
+    }
+
+    public String key() {
+        return switch (type) {
+            case TOP -> "top:" + offset + ":" + n;
+            case AROUND -> "around:" + portfolioId + ":" + range;
+            case WATCH -> "watch:" + portfolioIds.stream()
+                    .map(UUID::toString)
+                    .collect(Collectors.joining(","));
+        };
+    }
+}
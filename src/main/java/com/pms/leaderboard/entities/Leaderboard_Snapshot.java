@@ -21,7 +21,7 @@ public class Leaderboard_Snapshot {
     
     @Id
     @Column(updatable = false, nullable = false)
-    private UUID historyId = UUID.randomUUID();
+    private UUID historyId = UuidV7.next();
 
     @Column(name = "portfolio_id", nullable = false)
     private UUID portfolioId;
@@ -43,4 +43,7 @@ public class Leaderboard_Snapshot {
 
     @Column(name = "updated_at", nullable = false)
     private Instant updatedAt = Instant.now();
+
+    @Column(name = "event_at")
+    private Instant eventAt;
 }
@@ -1,26 +1,36 @@
 package com.pms.leaderboard.events;
 
-import java.math.BigDecimal;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.stereotype.Service;
 
 import com.pms.leaderboard.config.EventBuffer;
 import com.pms.leaderboard.dto.MessageDTO;
 import com.pms.leaderboard.services.LeaderboardService;
+import com.pms.leaderboard.services.OffsetWatermarks;
 import com.pms.leaderboard.services.RedisHealth;
 import com.pms.proto.analytics.RiskEvent;
 
+/**
+ * CONFLUENT ingest mode (default): records arrive as full RiskEvent objects
+ * built by KafkaProtobufDeserializer.
+ */
 @Service
-public class AnalyticsConsumer {
+@ConditionalOnProperty(name = "app.kafka.ingest-mode", havingValue = "CONFLUENT", matchIfMissing = true)
+public class AnalyticsConsumer implements ConsumerSeekAware {
 
     private static final Logger log
             = LoggerFactory.getLogger(AnalyticsConsumer.class);
@@ -37,10 +47,35 @@ public class AnalyticsConsumer {
     @Autowired
     LeaderboardService leaderboardService;
 
+    @Autowired
+    private OffsetWatermarks watermarks;
+
+    // per consumer thread; its seeks are queued, so rewind() may use it from any thread
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        watermarks.registerSeekCallback(callback);
+    }
+
+    @Override
+    public void unregisterSeekCallback() {
+        watermarks.unregisterSeekCallback();
+    }
+
+    // resume each partition right after the last offset applied to Redis
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        watermarks.onAssigned(assignments.keySet(), callback);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        watermarks.onRevoked(partitions);
+    }
+
     @KafkaListener(topics = "${app.kafka.risk-topic}", containerFactory = "kafkaListenerContainerFactory")
-    public void consume(List<RiskEvent> events) {
+    public void consume(List<ConsumerRecord<String, RiskEvent>> records) {
 
-        if (events == null || events.isEmpty()) {
+        if (records == null || records.isEmpty()) {
             log.warn("Kafka batch EMPTY");
             return;
         }
@@ -51,25 +86,30 @@ public class AnalyticsConsumer {
             throw new RuntimeException("Redis unavailable — stop polling");
         }
 
-        log.info("Kafka batch received size={}", events.size());
-        log.info("Kafka received at {}", System.currentTimeMillis());
-        System.out.println("Kafka received at " + System.currentTimeMillis());
-        System.out.println("Kafka batch received size={}" + events.size());
+        log.debug("Kafka batch received size={}", records.size());
 
-        events.forEach(e
+        records.forEach(r
                 -> log.debug(
                         "Kafka RiskEvent pid={} sharpe={} sortino={} avgReturn={}",
-                        e.getPortfolioId(),
-                        e.getSharpeRatio(),
-                        e.getSortinoRatio(),
-                        e.getAvgRateOfReturn()
+                        r.value().getPortfolioId(),
+                        r.value().getSharpeRatio(),
+                        r.value().getSortinoRatio(),
+                        r.value().getAvgRateOfReturn()
                 )
         );
 
-        List<MessageDTO> dtos = new ArrayList<>();
+        List<MessageDTO> dtos = new ArrayList<>(records.size());
+        long receivedAt = System.currentTimeMillis();
+        OffsetWatermarks.Poll poll = watermarks.beginPoll();
 
-        for (RiskEvent e : events) {
+        for (ConsumerRecord<String, RiskEvent> r : records) {
+
+            OffsetWatermarks.Token source = poll.track(r.partition(), r.offset());
+            if (source == null) {
+                continue; // redelivered, already in Redis
+            }
 
+            RiskEvent e = r.value();
             UUID pid;
 
             try {
@@ -80,15 +120,22 @@ public class AnalyticsConsumer {
             }
             MessageDTO dto = new MessageDTO(
                     pid,
-                    BigDecimal.valueOf(e.getSharpeRatio()),
-                    BigDecimal.valueOf(e.getSortinoRatio()),
-                    BigDecimal.valueOf(e.getAvgRateOfReturn()),
-                    LocalDateTime.now()
+                    e.getSharpeRatio(),
+                    e.getSortinoRatio(),
+                    e.getAvgRateOfReturn(),
+                    receivedAt,
+                    source
             );
             dtos.add(dto);
         }
 
-        eventBuffer.addAll(dtos);
+        try {
+            eventBuffer.addAll(dtos);
+        } catch (RuntimeException ex) {
+            poll.abandon();
+            throw ex;
+        }
+        poll.seal();
 
     }
 
@@ -104,10 +151,10 @@ public class AnalyticsConsumer {
 
         MessageDTO dto = new MessageDTO(
                 UUID.fromString(e.getPortfolioId()),
-                BigDecimal.valueOf(e.getSharpeRatio()),
-                BigDecimal.valueOf(e.getSortinoRatio()),
-                BigDecimal.valueOf(e.getAvgRateOfReturn()),
-                LocalDateTime.now()
+                e.getSharpeRatio(),
+                e.getSortinoRatio(),
+                e.getAvgRateOfReturn(),
+                System.currentTimeMillis()
         );
 
         log.debug("DTO created {}", dto);
@@ -0,0 +1,106 @@
+package com.pms.leaderboard.events;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Service;
+
+import com.pms.leaderboard.config.EventBuffer;
+import com.pms.leaderboard.dto.RiskEventColumns;
+import com.pms.leaderboard.services.OffsetWatermarks;
+import com.pms.leaderboard.services.RedisHealth;
+
+/**
+ * RAW ingest mode: reads the undeserialized Kafka values and decodes them
+ * with {@link RiskEventWireDecoder} into a per-thread column batch.
+ */
+@Service
+@ConditionalOnProperty(name = "app.kafka.ingest-mode", havingValue = "RAW")
+public class RawAnalyticsConsumer implements ConsumerSeekAware {
+
+    private static final Logger log
+            = LoggerFactory.getLogger(RawAnalyticsConsumer.class);
+
+    // one per listener thread (container concurrency), reused across polls
+    private static final ThreadLocal<RiskEventColumns> COLUMNS
+            = ThreadLocal.withInitial(() -> new RiskEventColumns(512));
+
+    @Autowired
+    EventBuffer eventBuffer;
+
+    @Autowired
+    private RedisHealth redisHealth;
+
+    @Autowired
+    private RiskEventWireDecoder decoder;
+
+    @Autowired
+    private OffsetWatermarks watermarks;
+
+    // per consumer thread; its seeks are queued, so rewind() may use it from any thread
+    @Override
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        watermarks.registerSeekCallback(callback);
+    }
+
+    @Override
+    public void unregisterSeekCallback() {
+        watermarks.unregisterSeekCallback();
+    }
+
+    // resume each partition right after the last offset applied to Redis
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        watermarks.onAssigned(assignments.keySet(), callback);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        watermarks.onRevoked(partitions);
+    }
+
+    @KafkaListener(topics = "${app.kafka.risk-topic}", containerFactory = "rawKafkaListenerContainerFactory")
+    public void consume(List<ConsumerRecord<String, byte[]>> records) {
+
+        if (records == null || records.isEmpty()) {
+            log.warn("Kafka batch EMPTY");
+            return;
+        }
+
+        if (!redisHealth.isAvailable()) {
+
+            log.error("🚨 Redis DOWN — rejecting Kafka batch");
+            throw new RuntimeException("Redis unavailable — stop polling");
+        }
+
+        RiskEventColumns columns = COLUMNS.get();
+        columns.reset(records.size());
+        OffsetWatermarks.Poll poll = watermarks.beginPoll();
+
+        for (ConsumerRecord<String, byte[]> r : records) {
+            OffsetWatermarks.Token source = poll.track(r.partition(), r.offset());
+            if (source != null) { // null → redelivered, already in Redis
+                decoder.decodeInto(r.value(), source, columns);
+            }
+        }
+
+        log.info("Kafka raw batch received size={} decoded={}", records.size(), columns.size());
+
+        try {
+            eventBuffer.addAll(columns);
+        } catch (RuntimeException ex) {
+            poll.abandon();
+            throw ex;
+        }
+        poll.seal();
+    }
+}
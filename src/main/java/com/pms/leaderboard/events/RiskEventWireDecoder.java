@@ -0,0 +1,319 @@
+package com.pms.leaderboard.events;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.pms.leaderboard.dto.RiskEventColumns;
+import com.pms.leaderboard.services.OffsetWatermarks;
+import com.pms.proto.analytics.RiskEvent;
+
+import io.confluent.kafka.schemaregistry.ParsedSchema;
+import io.confluent.kafka.schemaregistry.client.CachedSchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.client.SchemaRegistryClient;
+import io.confluent.kafka.schemaregistry.protobuf.ProtobufSchema;
+
+/**
+ * Decodes Confluent-framed RiskEvent bytes straight into
+ * {@link RiskEventColumns}, without building a RiskEvent or any String.
+ *
+ * Frame: magic 0x00 | schema id (int32 BE) | message indexes | protobuf.
+ *
+ * The schema id is checked against a local cache; the registry is only
+ * contacted the first time an id is seen, to verify that its first message
+ * is wire-compatible with the RiskEvent this decoder understands. While that
+ * lookup fails, records with the id are dropped like incompatible ones (the
+ * next event of the portfolio supersedes them); it is retried at most once
+ * per lookup-retry-ms.
+ */
+@Component
+public class RiskEventWireDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(RiskEventWireDecoder.class);
+
+    private static final byte MAGIC_BYTE = 0x0;
+
+    // protobuf tags: (field << 3) | wire type
+    private static final int TAG_PORTFOLIO_ID = (1 << 3) | 2;
+    private static final int TAG_AVG_RATE_OF_RETURN = (2 << 3) | 1;
+    private static final int TAG_SHARPE_RATIO = (3 << 3) | 1;
+    private static final int TAG_SORTINO_RATIO = (4 << 3) | 1;
+
+    private static final VarHandle LONG_LE
+            = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_BE
+            = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    @Value("${spring.kafka.properties.schema.registry.url:http://schema-registry:8081}")
+    private String schemaRegistryUrl;
+
+    // fast path: the id every record carries in steady state
+    private volatile int acceptedSchemaId = -1;
+
+    // every id seen so far → compatible?
+    private final ConcurrentHashMap<Integer, Boolean> schemaIds = new ConcurrentHashMap<>();
+
+    // id → System.nanoTime() of its last failed registry lookup
+    private final ConcurrentHashMap<Integer, Long> failedLookups = new ConcurrentHashMap<>();
+
+    @Value("${app.kafka.raw.lookup-retry-ms:5000}")
+    private long lookupRetryMs;
+
+    private volatile SchemaRegistryClient registry;
+
+    /**
+     * Appends one record to {@code out}, tagged with its poll {@code source}.
+     * Returns false (and appends nothing) for unknown framing, incompatible
+     * schema ids or a malformed portfolio id.
+     */
+    public boolean decodeInto(byte[] value, OffsetWatermarks.Token source, RiskEventColumns out) {
+
+        if (value == null || value.length < 6 || value[0] != MAGIC_BYTE) {
+            log.error("Not a Confluent-framed record, dropped");
+            return false;
+        }
+
+        int schemaId = (int) INT_BE.get(value, 1);
+        if (schemaId != acceptedSchemaId && !isCompatible(schemaId)) {
+            return false;
+        }
+
+        // message indexes: zigzag varint count, then indexes; a single 0
+        // byte is the common shorthand for [0] (first message in the file)
+        int pos = 5;
+        long header = readVarint(value, pos);
+        pos = varintEnd(value, pos);
+        int count = (int) ((header >>> 1) ^ -(header & 1));
+        for (int i = 0; i < count; i++) {
+            long idx = readVarint(value, pos);
+            pos = varintEnd(value, pos);
+            if (idx != 0) {
+                log.error("Unexpected message index in schema {}, dropped", schemaId);
+                return false;
+            }
+        }
+
+        try {
+            return decodeMessage(value, pos, source, out);
+        } catch (IndexOutOfBoundsException e) {
+            log.error("Truncated RiskEvent payload, dropped");
+            return false;
+        }
+    }
+
+    private boolean decodeMessage(byte[] b, int pos, OffsetWatermarks.Token source, RiskEventColumns out) {
+
+        long msb = 0;
+        long lsb = 0;
+        boolean hasPid = false;
+        double avg = 0;
+        double sharpe = 0;
+        double sortino = 0;
+
+        while (pos < b.length) {
+
+            long tag = readVarint(b, pos);
+            pos = varintEnd(b, pos);
+
+            if (tag == TAG_PORTFOLIO_ID) {
+                int len = (int) readVarint(b, pos);
+                pos = varintEnd(b, pos);
+                if (len != 36 || pos + len > b.length) {
+                    log.error("Invalid UUID length portfolioId len={}", len);
+                    return false;
+                }
+                long g1 = hex(b, pos, 8);
+                long g2 = hex(b, pos + 9, 4);
+                long g3 = hex(b, pos + 14, 4);
+                long g4 = hex(b, pos + 19, 4);
+                long g5 = hex(b, pos + 24, 12);
+                if ((g1 | g2 | g3 | g4 | g5) < 0 || !dashesAt(b, pos)) {
+                    log.error("Invalid UUID format portfolioId");
+                    return false;
+                }
+                msb = (g1 << 32) | (g2 << 16) | g3;
+                lsb = (g4 << 48) | g5;
+                hasPid = true;
+                pos += len;
+            } else if (tag == TAG_AVG_RATE_OF_RETURN) {
+                avg = Double.longBitsToDouble((long) LONG_LE.get(b, pos));
+                pos += 8;
+            } else if (tag == TAG_SHARPE_RATIO) {
+                sharpe = Double.longBitsToDouble((long) LONG_LE.get(b, pos));
+                pos += 8;
+            } else if (tag == TAG_SORTINO_RATIO) {
+                sortino = Double.longBitsToDouble((long) LONG_LE.get(b, pos));
+                pos += 8;
+            } else {
+                pos = skipField(b, pos, (int) (tag & 7));
+                if (pos < 0) {
+                    log.error("Malformed RiskEvent payload, dropped");
+                    return false;
+                }
+            }
+        }
+
+        if (!hasPid) {
+            log.error("RiskEvent without portfolioId, dropped");
+            return false;
+        }
+
+        out.add(msb, lsb, avg, sharpe, sortino, source);
+        return true;
+    }
+
+    // ---------- SCHEMA ID CACHE ----------
+    private boolean isCompatible(int schemaId) {
+
+        Boolean known = schemaIds.get(schemaId);
+        if (known == null) {
+            known = lookup(schemaId);
+            if (known == null) {
+                return false; // registry unreachable, logged by lookup
+            }
+        }
+        if (known) {
+            acceptedSchemaId = schemaId;
+        } else {
+            log.error("Record with incompatible schema id={} dropped", schemaId);
+        }
+        return known;
+    }
+
+    /**
+     * Verifies and caches an unseen id; null (nothing cached, record
+     * dropped) while the registry lookup fails. Throwing instead would fail
+     * the whole poll through the container error handler.
+     */
+    private Boolean lookup(int schemaId) {
+
+        Long failedAt = failedLookups.get(schemaId);
+        if (failedAt != null && System.nanoTime() - failedAt < lookupRetryMs * 1_000_000) {
+            return null;
+        }
+
+        try {
+            Boolean known = schemaIds.computeIfAbsent(schemaId, this::verifyWithRegistry);
+            failedLookups.remove(schemaId);
+            return known;
+        } catch (RuntimeException e) {
+            failedLookups.put(schemaId, System.nanoTime());
+            log.error("Schema registry lookup failed id={} — its records are dropped, retry in {} ms",
+                    schemaId, lookupRetryMs, e);
+            return null;
+        }
+    }
+
+    private boolean verifyWithRegistry(int schemaId) {
+        try {
+            ParsedSchema schema = registry().getSchemaById(schemaId);
+            if (!(schema instanceof ProtobufSchema protobuf)) {
+                log.error("Schema id={} is not protobuf", schemaId);
+                return false;
+            }
+            boolean ok = wireCompatible(protobuf.toDescriptor(), RiskEvent.getDescriptor());
+            log.info(" Schema id={} verified compatible={}", schemaId, ok);
+            return ok;
+        } catch (Exception e) {
+            // computeIfAbsent caches nothing on a throw
+            throw new IllegalStateException("Schema registry lookup failed id=" + schemaId, e);
+        }
+    }
+
+    private static boolean wireCompatible(Descriptor remote, Descriptor local) {
+        for (FieldDescriptor f : local.getFields()) {
+            FieldDescriptor r = remote.findFieldByNumber(f.getNumber());
+            if (r != null && r.getType() != f.getType()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private SchemaRegistryClient registry() {
+        SchemaRegistryClient client = registry;
+        if (client == null) {
+            synchronized (this) {
+                if (registry == null) {
+                    registry = new CachedSchemaRegistryClient(
+                            Collections.singletonList(schemaRegistryUrl), 100);
+                }
+                client = registry;
+            }
+        }
+        return client;
+    }
+
+    // ---------- WIRE HELPERS ----------
+    private static long readVarint(byte[] b, int pos) {
+        long result = 0;
+        for (int shift = 0; shift < 64 && pos < b.length; shift += 7) {
+            byte x = b[pos++];
+            result |= (long) (x & 0x7F) << shift;
+            if (x >= 0) {
+                return result;
+            }
+        }
+        return result;
+    }
+
+    private static int varintEnd(byte[] b, int pos) {
+        while (pos < b.length && b[pos] < 0) {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    private static int skipField(byte[] b, int pos, int wireType) {
+        switch (wireType) {
+            case 0:
+                return varintEnd(b, pos);
+            case 1:
+                return pos + 8;
+            case 2:
+                int len = (int) readVarint(b, pos);
+                return varintEnd(b, pos) + len;
+            case 5:
+                return pos + 4;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Parses {@code digits} (at most 12) hex chars; returns -1 on any
+     * non-hex char.
+     */
+    private static long hex(byte[] b, int pos, int digits) {
+        long v = 0;
+        for (int i = 0; i < digits; i++) {
+            int c = b[pos + i];
+            int d;
+            if (c >= '0' && c <= '9') {
+                d = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                d = c - 'a' + 10;
+            } else if (c >= 'A' && c <= 'F') {
+                d = c - 'A' + 10;
+            } else {
+                return -1;
+            }
+            v = (v << 4) | d;
+        }
+        return v;
+    }
+
+    private static boolean dashesAt(byte[] b, int pos) {
+        return b[pos + 8] == '-' && b[pos + 13] == '-'
+                && b[pos + 18] == '-' && b[pos + 23] == '-';
+    }
+}
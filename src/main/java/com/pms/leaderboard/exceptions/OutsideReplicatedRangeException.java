@@ -0,0 +1,7 @@
+package com.pms.leaderboard.exceptions;
+
+public class OutsideReplicatedRangeException extends RuntimeException {
+    public OutsideReplicatedRangeException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
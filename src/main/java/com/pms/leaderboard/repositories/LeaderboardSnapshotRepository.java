@@ -1,13 +1,62 @@
 package com.pms.leaderboard.repositories;
 
+import java.time.Instant;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.pms.leaderboard.dto.RankHistoryPoint;
 import com.pms.leaderboard.entities.Leaderboard_Snapshot;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface LeaderboardSnapshotRepository extends JpaRepository<Leaderboard_Snapshot, UUID> {
-    
-}
\ No newline at end of file
+
+    /**
+     * Latest snapshot per step-sized bucket in [from, to), buckets aligned
+     * on multiples of step since 2000-01-01 UTC. Rows are bucketed by write
+     * time (updated_at) and the latest is the newest event (event_at, as in
+     * SnapshotKeyframes.BOARD), so a late row never stands in for a newer
+     * state. One range probe per bucket on the (portfolio_id, updated_at)
+     * INCLUDE (rank, score, event_at) index: index-only, and cost follows
+     * the portfolio's rows in the range, never the whole table. Empty
+     * buckets are skipped.
+     *
+     * Stream: call inside a read-only transaction and close it.
+     */
+    @Query(value = """
+            SELECT CAST(EXTRACT(EPOCH FROM b.bucket) * 1000 AS bigint)     AS "bucketMs",
+                   CAST(EXTRACT(EPOCH FROM p.event_at) * 1000 AS bigint)   AS "eventMs",
+                   p.leaderboard_ranking                                   AS "rank",
+                   p.portfolio_score                                       AS "score"
+            FROM generate_series(
+                     date_bin(CAST(:step AS interval), CAST(:from AS timestamptz), TIMESTAMPTZ '2000-01-01 00:00:00+00'),
+                     CAST(:to AS timestamptz),
+                     CAST(:step AS interval)) AS b(bucket)
+            CROSS JOIN LATERAL (
+                SELECT COALESCE(s.event_at, s.updated_at) AS event_at,
+                       s.leaderboard_ranking, s.portfolio_score
+                FROM leaderboard_snapshot s
+                WHERE s.portfolio_id = :portfolioId
+                  AND s.updated_at >= GREATEST(b.bucket, CAST(:from AS timestamptz))
+                  AND s.updated_at < LEAST(b.bucket + CAST(:step AS interval), CAST(:to AS timestamptz))
+                ORDER BY COALESCE(s.event_at, s.updated_at) DESC, s.updated_at DESC
+                LIMIT 1
+            ) p
+            ORDER BY b.bucket
+            """, nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<RankHistoryPoint> streamHistory(
+            @Param("portfolioId") UUID portfolioId,
+            @Param("from") Instant from,
+            @Param("to") Instant to,
+            @Param("step") String step
+    );
+}
@@ -0,0 +1,141 @@
+package com.pms.leaderboard.services;
+
+import java.util.Collection;
+
+import jakarta.annotation.PostConstruct;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.pms.leaderboard.config.EventBuffer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Kafka backpressure by pausing partitions, never by stopping containers.
+ *
+ * Paused partitions stay assigned and keep their fetch position; the
+ * consumer keeps polling (heartbeats, queued seeks) but gets no records.
+ * Resuming is a flag flip on the next poll, not a group rebalance.
+ *
+ * Pause when Redis is down or the fullest EventBuffer shard reaches the high
+ * watermark; resume once Redis is up and every shard is back under the low
+ * watermark. Listener threads therefore never block on a full shard long
+ * enough to miss max.poll.interval.
+ */
+@Component
+public class KafkaFlowControl {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaFlowControl.class);
+
+    @Value("${app.kafka.flow.high-watermark:0.8}")
+    private double highWatermark;
+
+    @Value("${app.kafka.flow.low-watermark:0.5}")
+    private double lowWatermark;
+
+    @Autowired
+    private KafkaListenerEndpointRegistry registry;
+
+    @Autowired
+    private EventBuffer buffer;
+
+    @Autowired
+    private RedisHealth redisHealth;
+
+    @Autowired
+    private OffsetWatermarks watermarks;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // hysteresis between high and low watermark
+    private volatile boolean bufferFull;
+
+    private volatile int pausedPartitions;
+    private volatile long outageStartedNanos;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("leaderboard.kafka.paused.partitions", this, f -> f.pausedPartitions)
+                .description("Partitions paused by flow control")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelay = 100)
+    public void evaluate() {
+
+        double fill = buffer.fill();
+        if (!bufferFull && fill >= highWatermark) {
+            bufferFull = true;
+            log.warn("EventBuffer fill={} ≥ high watermark — pausing Kafka partitions", fill);
+        } else if (bufferFull && fill <= lowWatermark) {
+            bufferFull = false;
+            log.info("EventBuffer fill={} ≤ low watermark — resuming Kafka partitions", fill);
+        }
+
+        apply(bufferFull || !redisHealth.isAvailable());
+    }
+
+    // ---------- REDIS OUTAGE (RedisRecoveryOrchestrator) ----------
+    public void onOutage() {
+        outageStartedNanos = System.nanoTime();
+        apply(true);
+    }
+
+    /**
+     * Queues a seek back to the applied watermarks, then resumes if the
+     * buffer allows it. Seeks run on the consumer threads' next poll, before
+     * any records are fetched from the resumed partitions.
+     */
+    public void onRecovered() {
+
+        int rewound = watermarks.rewind();
+        evaluate();
+
+        log.info(" Kafka partitions resumed after {} ms outage, rewound to watermarks={}",
+                (System.nanoTime() - outageStartedNanos) / 1_000_000, rewound);
+    }
+
+    /**
+     * Pauses / resumes every assigned partition. Also catches partitions
+     * assigned while paused (rebalance), which start unpaused.
+     */
+    private synchronized void apply(boolean pause) {
+
+        int paused = 0;
+
+        for (MessageListenerContainer container : registry.getListenerContainers()) {
+
+            Collection<TopicPartition> assigned = container.getAssignedPartitions();
+            if (assigned == null) {
+                continue;
+            }
+
+            for (TopicPartition tp : assigned) {
+                boolean requested = container.isPartitionPauseRequested(tp);
+                if (pause && !requested) {
+                    container.pausePartition(tp);
+                } else if (!pause && requested) {
+                    container.resumePartition(tp);
+                }
+                if (pause) {
+                    paused++;
+                }
+            }
+        }
+
+        if (paused != pausedPartitions && (paused == 0 || pausedPartitions == 0)) {
+            log.warn("Kafka flow control: {} partitions paused", paused);
+        }
+        pausedPartitions = paused;
+    }
+}
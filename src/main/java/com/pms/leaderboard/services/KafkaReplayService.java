@@ -7,6 +7,10 @@ import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
 import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.stereotype.Service;
 
+/**
+ * Full container stop/start (group rebalance). Routine Redis outages are
+ * handled by {@link KafkaFlowControl} pausing partitions instead.
+ */
 @Service
 public class KafkaReplayService {
 
@@ -30,7 +34,9 @@ public class KafkaReplayService {
 
     public void replay() {
 
-        log.warn(" RESTARTING KAFKA CONSUMERS FROM EARLIEST");
+        // on assignment every partition seeks to its Redis offset watermark
+        // (OffsetWatermarks), so only the unapplied tail is replayed
+        log.warn(" RESTARTING KAFKA CONSUMERS FROM APPLIED OFFSET WATERMARKS");
         registry.getListenerContainers()
                 .forEach(container -> {
 
@@ -0,0 +1,145 @@
+package com.pms.leaderboard.services;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Redis lease electing the one instance that reads the leaderboard from
+ * Redis and feeds every other instance ({@link ViewReplicator}).
+ *
+ * SET key id NX PX lease-ms to acquire, compare-and-PEXPIRE to renew every
+ * renew-ms. An instance counts itself leader only until its last
+ * successful renew + lease-ms, so two leaders never overlap by more than
+ * clock drift; a dead leader is replaced within lease-ms + renew-ms.
+ */
+@Component
+public class LeaderLease {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderLease.class);
+
+    private static final String KEY = "leaderboard:publisher:leader";
+
+    // KEYS[1] = lease, ARGV = id, lease ms
+    private static final RedisScript<Long> RENEW = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+        """, Long.class);
+
+    // KEYS[1] = lease, ARGV = id
+    private static final RedisScript<Long> RELEASE = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+        """, Long.class);
+
+    @Value("${app.leaderboard.replication.lease-ms:3000}")
+    private long leaseMs;
+
+    @Autowired
+    private StringRedisTemplate redis;
+
+    @Autowired
+    private RedisHealth redisHealth;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String id = UUID.randomUUID().toString();
+    private final List<Runnable> onAcquired = new CopyOnWriteArrayList<>();
+
+    // leader until then (nanoTime); 0 = follower
+    private volatile long leaseUntilNanos;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("leaderboard.replication.leader", this, l -> l.isLeader() ? 1 : 0)
+                .description("1 while this instance holds the snapshot publisher lease")
+                .register(meterRegistry);
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public boolean isLeader() {
+        long until = leaseUntilNanos;
+        return until != 0 && System.nanoTime() < until;
+    }
+
+    /**
+     * Runs on the renewing thread right after this instance became leader.
+     */
+    public void onAcquired(Runnable listener) {
+        onAcquired.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${app.leaderboard.replication.renew-ms:1000}")
+    public void renew() {
+
+        if (!redisHealth.isAvailable()) {
+            return; // lease runs out locally
+        }
+
+        long started = System.nanoTime();
+        boolean wasLeader = isLeader();
+
+        try {
+            boolean held;
+            if (wasLeader) {
+                Long renewed = redis.execute(RENEW, List.of(KEY), id, Long.toString(leaseMs));
+                held = renewed != null && renewed == 1;
+            } else {
+                held = Boolean.TRUE.equals(
+                        redis.opsForValue().setIfAbsent(KEY, id, Duration.ofMillis(leaseMs)));
+            }
+
+            if (held) {
+                // counted from before the call: never outlives the Redis TTL
+                leaseUntilNanos = started + leaseMs * 1_000_000;
+                if (!wasLeader) {
+                    log.info("Snapshot publisher lease acquired id={}", id);
+                    onAcquired.forEach(Runnable::run);
+                }
+            } else if (wasLeader) {
+                leaseUntilNanos = 0;
+                log.warn("Snapshot publisher lease lost id={}", id);
+            }
+
+        } catch (Exception e) {
+            log.warn("Snapshot publisher lease renew failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (!isLeader()) {
+            return;
+        }
+        leaseUntilNanos = 0;
+        try {
+            redis.execute(RELEASE, List.of(KEY), id);
+        } catch (Exception e) {
+            log.debug("Snapshot publisher lease release failed", e);
+        }
+    }
+}
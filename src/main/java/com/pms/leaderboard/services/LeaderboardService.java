@@ -1,27 +1,34 @@
 package com.pms.leaderboard.services;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import jakarta.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.pms.leaderboard.dto.BatchDTO;
 import com.pms.leaderboard.dto.LeaderboardDTO;
 import com.pms.leaderboard.dto.MessageDTO;
+import com.pms.leaderboard.dto.ViewSpec;
+import com.pms.leaderboard.exceptions.OutsideReplicatedRangeException;
 
 @Service
 public class LeaderboardService {
@@ -35,25 +42,60 @@ public class LeaderboardService {
     @Autowired
     private RedisLeaderboardScript rscript;
 
+    @Autowired
+    private RedisBatchEncoder batchEncoder;
+
     @Autowired
     private RedisHealth redisHealth;
 
+    @Autowired
+    private OffsetWatermarks watermarks;
+
+    @Autowired
+    private LeaderboardView view;
+
+    @Autowired
+    private ViewReplicator replicator;
+
     @Autowired
     @Qualifier("redisExecutor")
     private ExecutorService redisExecutor;
 
+    @Value("${app.leaderboard.redis-write-mode:BATCH}")
+    private RedisWriteMode writeMode;
+
     private static final String ZKEY = "leaderboard:global:daily";
     private static final String HKEY_PREFIX = "leaderboard:portfolio:";
     private static final String STREAM_KEY = "leaderboard:stream";
+    // bumped by every write script; lets reloads skip an unchanged board
+    private static final String GENERATION_KEY = "leaderboard:generation";
+
+    private static final byte[] ZKEY_BYTES = ZKEY.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] STREAM_KEY_BYTES = STREAM_KEY.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HKEY_PREFIX_BYTES = HKEY_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GENERATION_KEY_BYTES = GENERATION_KEY.getBytes(StandardCharsets.US_ASCII);
+
+    // member, score, avgRateOfReturn, sharpeRatio, sortinoRatio, updatedAt
+    private static final int FIELDS_PER_ROW = 6;
 
     private static final Logger log = LoggerFactory.getLogger(LeaderboardService.class);
 
-  
-    public void processBatch(List<MessageDTO> batchList) {
+    @PostConstruct
+    public void init() {
+        replicator.readSlicesWith(this::fetchViewFromRedis);
+    }
+
+    /**
+     * Scores the batch and hands the Redis write to redisExecutor. The
+     * returned future completes when the write has finished (or failed after
+     * retries); callers that must keep per-portfolio order wait on it before
+     * submitting their next batch.
+     */
+    public CompletableFuture<Void> processBatch(List<MessageDTO> batchList) {
 
         if (batchList == null || batchList.isEmpty()) {
             log.warn("processBatch called with EMPTY list");
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         if (!redisHealth.isAvailable()) {
@@ -62,86 +104,174 @@ public class LeaderboardService {
 
         log.info("Processing batch size={}", batchList.size());
 
-        Map<UUID, MessageDTO> latest = new HashMap<>();
-        for (MessageDTO m : batchList) {
-            latest.put(m.getPortfolioId(), m);
+        // batchList is already coalesced (one event per portfolio) by
+        // EventBuffer and is reused by the caller → never capture it async
+        if (writeMode == RedisWriteMode.BATCH) {
+            return writeBatch(batchList);
         }
+        return writePerPortfolio(batchList);
+    }
 
-        List<MessageDTO> failed = new ArrayList<>();
+    // ---------- BATCH MODE: ONE SCRIPT CALL PER BATCH ----------
+    private CompletableFuture<Void> writeBatch(List<MessageDTO> rows) {
 
-        for (MessageDTO m : latest.values()) {
+        long now = System.currentTimeMillis();
+        String updatedAt = Instant.ofEpochMilli(now).toString();
 
-            try {
+        RedisBatchEncoder.Batch batch = batchEncoder.begin(
+                rows.size(),
+                ZKEY_BYTES,
+                STREAM_KEY_BYTES,
+                watermarks.keyBytes(),
+                GENERATION_KEY_BYTES,
+                updatedAt.getBytes(StandardCharsets.US_ASCII)
+        );
 
-                if (m.getAvgRateOfReturn() == null
-                        || m.getSharpeRatio() == null
-                        || m.getSortinoRatio() == null) {
-                    throw new IllegalStateException("NULL metrics for portfolio " + m.getPortfolioId());
-                }
+        // applied to the in-process view once Redis accepted them
+        LeaderboardView.Entry[] applied = new LeaderboardView.Entry[rows.size()];
 
-                UUID pid = m.getPortfolioId();
-                BigDecimal score = computeScore(m);
+        for (MessageDTO m : rows) {
 
-                double redisScore = redisScoreService.compositeScore(
-                        score, Instant.now(), pid
-                );
+            if (!hasFiniteMetrics(m)) {
+                log.error("Non-finite metrics for portfolio {} — skipped", m.getPortfolioId());
+                continue;
+            }
 
-              
-                try {
-                    redisExecutor.submit(() -> {
-                        executeWithRetry("redis-write-" + pid, () -> {
-
-                            Long rank = redis.execute(
-                                    rscript.upsertAndRank(),
-                                    List.of(ZKEY),
-                                    String.valueOf(redisScore),
-                                    pid.toString()
-                            );
-
-                            if (rank == null) {
-                                throw new IllegalStateException("Redis rank failed");
-                            }
-
-                            String hkey = HKEY_PREFIX + pid;
-
-                            redis.opsForHash().put(hkey, "score", score.toString());
-                            redis.opsForHash().put(hkey, "sharpeRatio", m.getSharpeRatio().toString());
-                            redis.opsForHash().put(hkey, "sortinoRatio", m.getSortinoRatio().toString());
-                            redis.opsForHash().put(hkey, "avgRateOfReturn", m.getAvgRateOfReturn().toString());
-                            redis.opsForHash().put(hkey, "updatedAt", Instant.now().toString());
-
-                            redis.opsForStream().add(STREAM_KEY, Map.of(
-                                    "portfolioId", pid.toString(),
-                                    "score", score.toString(),
-                                    "rank", String.valueOf(rank + 1),
-                                    "avgRateOfReturn", m.getAvgRateOfReturn().toString(),
-                                    "sharpeRatio", m.getSharpeRatio().toString(),
-                                    "sortinoRatio", m.getSortinoRatio().toString(),
-                                    "updatedAt", Instant.now().toString()
-                            ));
-
-                        });
+            UUID pid = m.getPortfolioId();
+            double score = redisScoreService.baseScore(
+                    m.getAvgRateOfReturn(), m.getSharpeRatio(), m.getSortinoRatio());
+            double redisScore = redisScoreService.compositeScore(score, now, pid);
+
+            applied[batch.size()] = new LeaderboardView.Entry(pid, redisScore,
+                    m.getAvgRateOfReturn(), m.getSharpeRatio(), m.getSortinoRatio(), updatedAt);
+            batch.add(pid, HKEY_PREFIX, redisScore, score,
+                    m.getSharpeRatio(), m.getSortinoRatio(), m.getAvgRateOfReturn());
+        }
+
+        int size = batch.size();
+        if (size == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // offsets released by earlier batches, committed with these rows
+        List<byte[]> offsets = watermarks.pendingArgs();
+        batch.watermarks(offsets);
+
+        int numKeys = batch.numKeys();
+        byte[][] keysAndArgs = batch.keysAndArgs();
+
+        try {
+            return CompletableFuture.runAsync(() -> {
+                executeWithRetry("redis-batch-write-" + size, () -> {
+
+                    List<Object> ranks = redis.execute((RedisCallback<List<Object>>) connection
+                            -> rscript.executeBatch(connection, numKeys, keysAndArgs));
 
+                    if (ranks == null || ranks.size() != size) {
+                        throw new IllegalStateException("Redis batch rank failed");
+                    }
+                    watermarks.flushed(offsets);
+                    view.apply(applied);
+
+                    log.debug("Redis batch applied portfolios={} roundTrips=1", size);
+                });
+            }, redisExecutor);
+
+        } catch (RejectedExecutionException ex) {
+
+            log.error(" REDIS EXECUTOR SATURATED — STOPPING KAFKA");
+
+            redisHealth.down();
+
+            throw new RuntimeException("Redis overloaded");
+        }
+    }
+
+    // ---------- PER-PORTFOLIO MODE: ~7 ROUND TRIPS PER EVENT ----------
+    private CompletableFuture<Void> writePerPortfolio(List<MessageDTO> rows) {
+
+        List<CompletableFuture<Void>> writes = new ArrayList<>(rows.size());
+        RuntimeException rejected = null;
+
+        for (MessageDTO m : rows) {
+
+            // dropped on purpose: released with the batch, never retried
+            if (!hasFiniteMetrics(m)) {
+                log.error("Non-finite metrics for portfolio {} — skipped", m.getPortfolioId());
+                continue;
+            }
+
+            UUID pid = m.getPortfolioId();
+            double score = redisScoreService.baseScore(
+                    m.getAvgRateOfReturn(), m.getSharpeRatio(), m.getSortinoRatio());
+
+            double redisScore = redisScoreService.compositeScore(
+                    score, System.currentTimeMillis(), pid
+            );
+
+            try {
+                writes.add(CompletableFuture.runAsync(() -> {
+                    executeWithRetry("redis-write-" + pid, () -> {
+
+                        Long rank = redis.execute(
+                                rscript.upsertAndRank(),
+                                List.of(ZKEY, GENERATION_KEY),
+                                String.valueOf(redisScore),
+                                pid.toString()
+                        );
+
+                        if (rank == null) {
+                            throw new IllegalStateException("Redis rank failed");
+                        }
+
+                        String hkey = HKEY_PREFIX + pid;
+                        String updatedAt = Instant.now().toString();
+
+                        redis.opsForHash().put(hkey, "score", String.valueOf(score));
+                        redis.opsForHash().put(hkey, "sharpeRatio", String.valueOf(m.getSharpeRatio()));
+                        redis.opsForHash().put(hkey, "sortinoRatio", String.valueOf(m.getSortinoRatio()));
+                        redis.opsForHash().put(hkey, "avgRateOfReturn", String.valueOf(m.getAvgRateOfReturn()));
+                        redis.opsForHash().put(hkey, "updatedAt", updatedAt);
+
+                        redis.opsForStream().add(STREAM_KEY, Map.of(
+                                "portfolioId", pid.toString(),
+                                "score", String.valueOf(score),
+                                "rank", String.valueOf(rank + 1),
+                                "avgRateOfReturn", String.valueOf(m.getAvgRateOfReturn()),
+                                "sharpeRatio", String.valueOf(m.getSharpeRatio()),
+                                "sortinoRatio", String.valueOf(m.getSortinoRatio()),
+                                "updatedAt", Instant.now().toString()
+                        ));
+
+                        view.apply(new LeaderboardView.Entry[]{new LeaderboardView.Entry(
+                                pid, redisScore, m.getAvgRateOfReturn(),
+                                m.getSharpeRatio(), m.getSortinoRatio(), updatedAt)});
                     });
 
-                } catch (java.util.concurrent.RejectedExecutionException ex) {
+                }, redisExecutor));
 
-                    log.error(" REDIS EXECUTOR SATURATED — STOPPING KAFKA");
+            } catch (RejectedExecutionException ex) {
 
-                    redisHealth.down();   
+                log.error(" REDIS EXECUTOR SATURATED — STOPPING KAFKA");
 
-                    throw new RuntimeException("Redis overloaded");
-                }
+                redisHealth.down();
 
-            } catch (Exception ex) {
-                log.error("Failed processing portfolio {}", m.getPortfolioId(), ex);
-                failed.add(m);
+                rejected = new RuntimeException("Redis overloaded", ex);
+                break;
             }
         }
 
-        if (!failed.isEmpty()) {
-            log.warn("Failed portfolios count = {}", failed.size());
+        CompletableFuture<Void> submitted = CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new));
+        if (rejected == null) {
+            return submitted;
         }
+
+        // the rest of the batch never reached Redis: fail it once the
+        // submitted writes settled, so EventBuffer requeues it unreleased
+        RuntimeException failure = rejected;
+        return submitted.handle((ignored, e) -> {
+            throw failure;
+        });
     }
 
     public Map<String, Object> getTop(int n) {
@@ -158,44 +288,33 @@ public class LeaderboardService {
 
     public Map<String, Object> getAround(String portfolioId, int range) {
 
-        Long centerRank = redis.opsForZSet()
-                .reverseRank(ZKEY, portfolioId);
-
-        if (centerRank == null) {
-            return Map.of(
-                    "event", "leaderboardAround",
-                    "timestamp", Instant.now().toEpochMilli(),
-                    "centerRank", null,
-                    "top", List.of()
-            );
+        List<Object> flat = redis.execute((RedisCallback<List<Object>>) connection
+                -> rscript.executeAround(connection, ZKEY_BYTES,
+                        portfolioId.getBytes(StandardCharsets.UTF_8), range, HKEY_PREFIX_BYTES));
+
+        if (flat == null || flat.isEmpty()) {
+            Map<String, Object> empty = new HashMap<>();
+            empty.put("event", "leaderboardAround");
+            empty.put("timestamp", Instant.now().toEpochMilli());
+            empty.put("centerRank", null);
+            empty.put("top", List.of());
+            return empty;
         }
 
-        long start = Math.max(0, centerRank - range);
-        long end = centerRank + range;
-
-        Set<ZSetOperations.TypedTuple<String>> slice
-                = redis.opsForZSet().reverseRangeWithScores(ZKEY, start, end);
+        long centerRank = (Long) flat.get(0);
+        long rank = Math.max(0, centerRank - range) + 1;
 
         List<Map<String, Object>> rows = new ArrayList<>();
-        long rank = start + 1;
-
-        if (slice != null) {
-            for (var t : slice) {
-                String pid = t.getValue();
-                Map<Object, Object> h
-                        = redis.opsForHash().entries(HKEY_PREFIX + pid);
-
-                Map<String, Object> r = new HashMap<>();
-                r.put("rank", rank++);
-                r.put("portfolioId", pid);
-                r.put("compositeScore", t.getScore());
-                r.put("sharpe", h.get("sharpeRatio"));
-                r.put("sortino", h.get("sortinoRatio"));
-                r.put("avgReturn", h.get("avgRateOfReturn"));
-                r.put("updated", h.get("updatedAt"));
-
-                rows.add(r);
-            }
+        for (int i = 1; i + FIELDS_PER_ROW <= flat.size(); i += FIELDS_PER_ROW) {
+            Map<String, Object> r = new HashMap<>();
+            r.put("rank", rank++);
+            r.put("portfolioId", str(flat.get(i)));
+            r.put("compositeScore", Double.parseDouble(str(flat.get(i + 1))));
+            r.put("avgReturn", str(flat.get(i + 2)));
+            r.put("sharpe", str(flat.get(i + 3)));
+            r.put("sortino", str(flat.get(i + 4)));
+            r.put("updated", str(flat.get(i + 5)));
+            rows.add(r);
         }
 
         return Map.of(
@@ -206,39 +325,212 @@ public class LeaderboardService {
         );
     }
 
+    /**
+     * Served from the in-process view when it is within its staleness bound,
+     * otherwise (cold start, reloads failing) straight from Redis.
+     */
     public List<LeaderboardDTO> fetchTop(int n) {
 
-        Set<ZSetOperations.TypedTuple<String>> top
-                = redis.opsForZSet().reverseRangeWithScores(ZKEY, 0, n - 1);
+        List<LeaderboardDTO> cached = view.top(n);
+        if (cached != null) {
+            return cached;
+        }
+        return fetchTopFromRedis(n);
+    }
+
+    // ---------- SUBSCRIPTION VIEWS ----------
+    /**
+     * Rows of one WebSocket subscription view. Answered from the in-process
+     * view when it is fresh and the slice lies within its capacity; else one
+     * script call against Redis.
+     *
+     * While replicating, slices past the capacity come from the feed: the
+     * leader reads each one from Redis once and publishes it, so they cost
+     * no per-instance Redis reads. One the leader has not published (yet,
+     * or past max-slices) is an {@link OutsideReplicatedRangeException},
+     * never an empty board. Redis is only read here when the view itself is
+     * stale (cold start, feed down), i.e. when this instance reloads from
+     * Redis anyway.
+     */
+    public List<LeaderboardDTO> fetchView(ViewSpec spec) {
+
+        LeaderboardView.Ranked ranked = view.ranked();
+        if (ranked != null) {
+            List<LeaderboardDTO> rows = ranked.slice(spec);
+            if (rows != null) {
+                return rows;
+            }
+            if (replicator.servesSlices()) {
+                rows = replicator.slice(spec);
+                if (rows == null) {
+                    throw new OutsideReplicatedRangeException(
+                            "View " + spec.key() + " is outside the replicated range", null);
+                }
+                return rows;
+            }
+        }
+
+        return fetchViewFromRedis(spec);
+    }
+
+    // one script call; also how the replication leader reads slices past capacity
+    private List<LeaderboardDTO> fetchViewFromRedis(ViewSpec spec) {
+
+        return switch (spec.type()) {
+            case TOP -> fetchRangeFromRedis(spec.offset(), spec.n());
+            case AROUND -> fetchAroundFromRedis(spec.portfolioId(), spec.range());
+            case WATCH -> fetchMembersFromRedis(spec.portfolioIds());
+        };
+    }
+
+    private List<LeaderboardDTO> fetchRangeFromRedis(int offset, int n) {
+
+        List<Object> flat = redis.execute((RedisCallback<List<Object>>) connection
+                -> rscript.executeRange(connection, ZKEY_BYTES, offset, offset + n - 1, HKEY_PREFIX_BYTES));
+
+        return flat == null ? new ArrayList<>() : toRows(flat, 0, offset + 1);
+    }
+
+    private List<LeaderboardDTO> fetchAroundFromRedis(UUID portfolioId, int range) {
+
+        List<Object> flat = redis.execute((RedisCallback<List<Object>>) connection
+                -> rscript.executeAround(connection, ZKEY_BYTES,
+                        portfolioId.toString().getBytes(StandardCharsets.US_ASCII), range, HKEY_PREFIX_BYTES));
+
+        if (flat == null || flat.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        long centerRank = (Long) flat.get(0);
+        return toRows(flat, 1, Math.max(0, centerRank - range) + 1);
+    }
+
+    private List<LeaderboardDTO> fetchMembersFromRedis(List<UUID> portfolioIds) {
+
+        byte[][] members = new byte[portfolioIds.size()][];
+        for (int i = 0; i < members.length; i++) {
+            members[i] = portfolioIds.get(i).toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        List<Object> flat = redis.execute((RedisCallback<List<Object>>) connection
+                -> rscript.executeMembers(connection, ZKEY_BYTES, HKEY_PREFIX_BYTES, members));
 
         List<LeaderboardDTO> rows = new ArrayList<>();
-        long rank = 1;
-
-        if (top != null) {
-            for (var t : top) {
-                String pid = t.getValue();
-                Map<Object, Object> h
-                        = redis.opsForHash().entries(HKEY_PREFIX + pid);
-
-                rows.add(new LeaderboardDTO(
-                        rank++,
-                        UUID.fromString(pid),
-                        t.getScore(),
-                        new BigDecimal(h.get("avgRateOfReturn").toString()),
-                        new BigDecimal(h.get("sharpeRatio").toString()),
-                        new BigDecimal(h.get("sortinoRatio").toString()),
-                        h.get("updatedAt").toString()
-                ));
+        if (flat == null) {
+            return rows;
+        }
+
+        // rank prefix + one hydrated row
+        for (int i = 0; i + 1 + FIELDS_PER_ROW <= flat.size(); i += 1 + FIELDS_PER_ROW) {
+            long rank = (Long) flat.get(i) + 1;
+            rows.addAll(toRows(flat.subList(i + 1, i + 1 + FIELDS_PER_ROW), 0, rank));
+        }
+        return rows;
+    }
+
+    // ---------- VIEW RELOAD ----------
+    /**
+     * Only while the view is read (REST, WebSocket subscribers) and only on
+     * the replication leader (or while the feed is down); idle instances
+     * and followers do not touch Redis. One script call returns just the
+     * generation when nothing was written since the last reload.
+     */
+    @Scheduled(fixedDelayString = "${app.leaderboard.view.refresh-ms:500}")
+    public void reloadView() {
+
+        if (!view.inDemand() || !replicator.reloadsFromRedis()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        long known = view.redisGeneration();
+
+        try {
+            List<Object> flat = redis.execute((RedisCallback<List<Object>>) connection
+                    -> rscript.executeRangeIfChanged(connection, ZKEY_BYTES, GENERATION_KEY_BYTES,
+                            0, view.capacity() - 1, HKEY_PREFIX_BYTES, known));
+
+            if (flat == null || flat.isEmpty()) {
+                throw new IllegalStateException("Leaderboard range script returned nothing");
+            }
+
+            long generation = Long.parseLong(str(flat.get(0)));
+            if (generation == known) {
+                view.confirm(started);
+                return;
+            }
+
+            List<LeaderboardDTO> top = toRows(flat, 1, 1);
+
+            List<LeaderboardView.Entry> entries = new ArrayList<>(top.size());
+            for (LeaderboardDTO d : top) {
+                entries.add(new LeaderboardView.Entry(d.getPortfolioId(), d.getCompositeScore(),
+                        d.getAvgReturn(), d.getSharpe(), d.getSortino(), d.getUpdated()));
+            }
+
+            view.replace(entries, started, generation);
+
+        } catch (Exception e) {
+            // view ages out of its staleness bound → reads fall back to Redis
+            log.warn("Leaderboard view reload failed", e);
+        }
+    }
+
+    // ---------- READ PATH: ONE SCRIPT CALL PER SLICE ----------
+    /**
+     * Ranked slice plus every row's metrics in a single round trip, whatever
+     * n is. Members whose hash is missing (written by ZADD only, or expired)
+     * are skipped; their rank slot stays taken.
+     */
+    public List<LeaderboardDTO> fetchTopFromRedis(int n) {
+
+        List<Object> flat = redis.execute((RedisCallback<List<Object>>) connection
+                -> rscript.executeRange(connection, ZKEY_BYTES, 0, n - 1, HKEY_PREFIX_BYTES));
+
+        return flat == null ? new ArrayList<>() : toRows(flat, 0, 1);
+    }
+
+    /**
+     * Hydrated rows starting at flat[from], ranked from firstRank on.
+     */
+    private List<LeaderboardDTO> toRows(List<Object> flat, int from, long firstRank) {
+
+        List<LeaderboardDTO> rows = new ArrayList<>((flat.size() - from) / FIELDS_PER_ROW);
+
+        long rank = firstRank;
+        for (int i = from; i + FIELDS_PER_ROW <= flat.size(); i += FIELDS_PER_ROW, rank++) {
+
+            String updated = str(flat.get(i + 5));
+            if (updated == null && flat.get(i + 2) == null) {
+                continue; // no hash for this member
             }
+
+            rows.add(new LeaderboardDTO(
+                    rank,
+                    UUID.fromString(str(flat.get(i))),
+                    Double.parseDouble(str(flat.get(i + 1))),
+                    parseDouble(flat.get(i + 2)),
+                    parseDouble(flat.get(i + 3)),
+                    parseDouble(flat.get(i + 4)),
+                    updated
+            ));
         }
 
         return rows;
     }
 
-    private BigDecimal computeScore(MessageDTO e) {
-        return e.getAvgRateOfReturn().multiply(BigDecimal.valueOf(50))
-                .add(e.getSharpeRatio().multiply(BigDecimal.valueOf(30)))
-                .add(e.getSortinoRatio().multiply(BigDecimal.valueOf(20)));
+    private static String str(Object v) {
+        return v == null ? null : new String((byte[]) v, StandardCharsets.UTF_8);
+    }
+
+    private static double parseDouble(Object v) {
+        return v == null ? Double.NaN : Double.parseDouble(str(v));
+    }
+
+    private static boolean hasFiniteMetrics(MessageDTO m) {
+        return Double.isFinite(m.getAvgRateOfReturn())
+                && Double.isFinite(m.getSharpeRatio())
+                && Double.isFinite(m.getSortinoRatio());
     }
 
     // Retry helper: execute operation with exponential backoff. Max 3 attempts:
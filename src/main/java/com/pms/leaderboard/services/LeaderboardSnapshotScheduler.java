@@ -1,46 +1,141 @@
 package com.pms.leaderboard.services;
 
-import java.util.List;
+import java.time.Instant;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import com.pms.leaderboard.Handler.WebSocketHandler;
-import com.pms.leaderboard.dto.LeaderboardDTO;
 
+/**
+ * Pushes subscription views to WebSocket sessions when the leaderboard
+ * changes.
+ *
+ * Triggered by {@link LeaderboardView} changes (local writes, reloads that
+ * saw a new Redis generation), by newly created views and by replicated
+ * slices past the view capacity ({@link ViewReplicator}). A change
+ * publishes at once unless the last publish was less than
+ * {@code min-interval-ms} ago; then it is deferred to the end of the
+ * interval, and every change until then rides along with it. Nobody
+ * connected → nothing is read or encoded.
+ */
 @Component
 public class LeaderboardSnapshotScheduler {
 
     private static final Logger log
             = LoggerFactory.getLogger(LeaderboardSnapshotScheduler.class);
 
-    private static final int TOP_N = 50;
-
     @Autowired
-    LeaderboardService leaderboardService;
+    LeaderboardView view;
 
     @Autowired
     WebSocketHandler wsHandler;
 
+    @Autowired
+    ViewReplicator replicator;
+
      @Autowired
     @Qualifier("realtimeExecutor")
     private ExecutorService realtimeExecutor;
 
-    @Scheduled(fixedRate = 250)
-    public void publishSnapshot() {
-        realtimeExecutor.submit(() -> {
-            try {
-                List<LeaderboardDTO> top = leaderboardService.fetchTop(TOP_N);
-                wsHandler.broadcastSnapshot(top);
-            } catch (Exception e) {
-                log.warn("Snapshot publish failed", e);
-            }
-        });
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    // caps the publish rate under a constant stream of changes
+    @Value("${app.leaderboard.publish.min-interval-ms:100}")
+    private long minIntervalMs;
+
+    // a publish is submitted or waiting for the interval to pass
+    private final AtomicBoolean pending = new AtomicBoolean();
+    // a view was created or a replicated slice changed: publish even if
+    // the generation did not move
+    private final AtomicBoolean forced = new AtomicBoolean();
+
+    private volatile long publishedGeneration = -1;
+    private volatile long lastPublishNanos;
+
+    @PostConstruct
+    public void init() {
+        view.onChange(this::changed);
+        wsHandler.onSubscribe(this::force);
+        replicator.onSlices(this::force);
+        replicator.viewsFrom(wsHandler::viewSpecs);
+    }
+
+    void force() {
+        forced.set(true);
+        changed();
+    }
+
+    /**
+     * Non-blocking: runs on Redis write and WebSocket threads.
+     */
+    void changed() {
+
+        if (!wsHandler.hasSessions()
+                || (view.generation() == publishedGeneration && !forced.get())) {
+            return;
+        }
+
+        if (!pending.compareAndSet(false, true)) {
+            return; // coalesced into the pending publish
+        }
+
+        long waitNanos = lastPublishNanos + minIntervalMs * 1_000_000 - System.nanoTime();
+        if (lastPublishNanos == 0 || waitNanos <= 0) {
+            submit();
+        } else {
+            taskScheduler.schedule(this::submit, Instant.now().plusNanos(waitNanos));
+        }
+    }
+
+    /**
+     * Safety net for a publish that failed or was rejected: no change is
+     * left unpublished for longer than this. Also keeps the view reloading
+     * while sessions are open, since they read it only on change.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void heartbeat() {
+        if (wsHandler.hasSessions()) {
+            view.touch();
+            changed();
+        }
+    }
+
+    private void submit() {
+        try {
+            realtimeExecutor.execute(this::publishSnapshot);
+        } catch (RejectedExecutionException e) {
+            pending.set(false);
+            log.warn("Snapshot publish rejected, realtime executor saturated");
+        }
+    }
+
+    private void publishSnapshot() {
+
+        // changes from here on schedule the next publish
+        pending.set(false);
+        forced.set(false);
+        long generation = view.generation();
+        lastPublishNanos = System.nanoTime();
+
+        try {
+            wsHandler.publishViews();
+            publishedGeneration = generation;
+        } catch (Exception e) {
+            log.warn("Snapshot publish failed", e);
+        }
     }
 
 }
@@ -1,30 +1,67 @@
 package com.pms.leaderboard.services;
 
 import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.stream.Consumer;
 import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
 import org.springframework.data.redis.connection.stream.StreamOffset;
 import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.pms.leaderboard.dto.BatchDTO;
 import com.pms.leaderboard.exceptions.DataValidationException;
 import com.pms.leaderboard.exceptions.TransientDbException;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 
+/**
+ * Persists leaderboard:stream to Postgres through the consumer group
+ * leaderboard-db-group.
+ *
+ * Each instance runs {@code workers} main-stream consumers plus one on the
+ * retry stream, named {@code db-writer-<instance-id>-<n>} and
+ * {@code db-retry-<instance-id>}. The instance id defaults to the host
+ * name, so a restarted instance gets its consumers back and every worker
+ * starts by re-reading its own pending entries.
+ *
+ * Entries whose consumer is gone for good (instance replaced, scaled
+ * down) are moved by the claimer: XAUTOCLAIM hands entries idle longer
+ * than claim-min-idle-ms to a local worker, which reads them from its
+ * pending list like its own. Consumers with nothing pending and idle past
+ * consumer-expire-ms are removed from the group.
+ */
+// partitions exist before the write loops start
+@DependsOn("snapshotPartitions")
 @Service
 public class LeaderboardStreamConsumer {
 
@@ -34,17 +71,49 @@ public class LeaderboardStreamConsumer {
     private static final String RETRY_STREAM = "leaderboard:stream:retry";
     private static final String DLQ_KEY = "leaderboard:dlq";
     private static final String GROUP = "leaderboard-db-group";
-    private static final String CONSUMER = "db-writer-" + UUID.randomUUID();
-    private static final String RETRY_HASH = "leaderboard:retry";
+    private static final String RETRIES_FIELD = "retries";
 
     private static final int MAX_RETRIES = 5;
+    private static final int CLAIM_COUNT = 100;
+    private static final int CLAIM_PAGES_PER_RUN = 10;
+
+    // records per XREADGROUP, persisted in one transaction
+    @Value("${app.leaderboard.persist.batch-size:200}")
+    private int batchSize;
+
+    // main-stream consumers per instance (each holds a JDBC connection while writing)
+    @Value("${app.leaderboard.persist.workers:2}")
+    private int workerCount;
+
+    @Value("${app.leaderboard.persist.instance-id:}")
+    private String instanceId;
+
+    // entries idle this long belong to a dead consumer
+    @Value("${app.leaderboard.persist.claim-min-idle-ms:60000}")
+    private long claimMinIdleMs;
+
+    @Value("${app.leaderboard.persist.consumer-expire-ms:3600000}")
+    private long consumerExpireMs;
+
+    // write-behind: latest state per portfolio, flushed every interval
+    @Value("${app.leaderboard.persist.coalesce.enabled:false}")
+    private boolean coalesce;
+
+    @Value("${app.leaderboard.persist.coalesce.interval-ms:1000}")
+    private long coalesceIntervalMs;
 
     @Autowired
     private StringRedisTemplate redis;
 
+    @Value("${app.leaderboard.persist.write-mode:COPY}")
+    private SnapshotWriteMode writeMode;
+
     @Autowired
     private PersistSnapshot persist;
 
+    @Autowired
+    private SnapshotCopyWriter copyWriter;
+
     @Autowired
     private DbHealth dbHealth;
 
@@ -52,6 +121,44 @@ public class LeaderboardStreamConsumer {
     @Qualifier("dbExecutor")
     private ExecutorService dbExecutor;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter claimed;
+
+    // ---------- WORKERS ----------
+    private static final class Slot {
+
+        private Pending latest;
+        private final List<RecordId> ids = new ArrayList<>();
+    }
+
+    private static final class Worker {
+
+        private final String stream;
+        private final String name;
+        private final boolean coalesce;
+
+        // own pending list is re-read while scanned < scanRequested
+        private final AtomicLong scanRequested = new AtomicLong(1);
+        private long scanned;
+        private String scanCursor = "0-0";
+
+        // coalescing state, worker thread only (size read by the gauge)
+        private final Map<UUID, Slot> coalesced = new ConcurrentHashMap<>();
+        private long lastFlushNanos = System.nanoTime();
+
+        Worker(String stream, String name, boolean coalesce) {
+            this.stream = stream;
+            this.name = name;
+            this.coalesce = coalesce;
+        }
+    }
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final Map<String, Worker> workersByName = new HashMap<>();
+    private int claimRound;
+
     // ---------- INIT ----------
     @PostConstruct
     public void init() {
@@ -65,14 +172,45 @@ public class LeaderboardStreamConsumer {
         } catch (Exception ignored) {
         }
 
-        dbExecutor.submit(this::mainLoop);
-        dbExecutor.submit(this::retryLoop);
+        workerCount = Math.max(1, workerCount);
+        String id = instanceId();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(STREAM_KEY, "db-writer-" + id + "-" + i, coalesce));
+        }
+        workers.add(new Worker(RETRY_STREAM, "db-retry-" + id, false));
+        workers.forEach(w -> workersByName.put(w.name, w));
+
+        claimed = Counter.builder("leaderboard.persist.claimed")
+                .description("Stream entries taken over from dead consumers")
+                .register(meterRegistry);
+        Gauge.builder("leaderboard.persist.coalesced", workers,
+                ws -> ws.stream().mapToInt(w -> w.coalesced.size()).sum())
+                .description("Portfolios with state waiting for the next write-behind flush")
+                .register(meterRegistry);
+
+        for (Worker w : workers) {
+            dbExecutor.submit(() -> workerLoop(w));
+        }
 
-        log.info(" Stream consumers started");
+        log.info(" Stream consumers started workers={} instance={}", workerCount, id);
     }
 
-    // ---------- MAIN STREAM LOOP ----------
-    private void mainLoop() {
+    private String instanceId() {
+        if (instanceId != null && !instanceId.isBlank()) {
+            return instanceId;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            // still recovered, by the claimer after claim-min-idle-ms
+            String random = UUID.randomUUID().toString();
+            log.warn(" No host name for stable consumer names, using {}", random);
+            return random;
+        }
+    }
+
+    // ---------- WORKER LOOP ----------
+    private void workerLoop(Worker w) {
         while (true) {
             try {
 
@@ -81,116 +219,310 @@ public class LeaderboardStreamConsumer {
                     continue;
                 }
 
+                // own pending entries first: after a restart, after a batch
+                // was left unacked, after the claimer handed some over
+                long requested = w.scanRequested.get();
+                boolean scanning = w.scanned < requested;
+
+                // wake up in time for the next flush
+                long blockMs = w.coalesce ? Math.min(2000, Math.max(1, coalesceIntervalMs)) : 2000;
+
                 List<MapRecord<String, Object, Object>> records
                         = redis.opsForStream().read(
-                                Consumer.from(GROUP, CONSUMER),
-                                StreamReadOptions.empty().count(20).block(Duration.ofSeconds(2)),
-                                StreamOffset.create(STREAM_KEY, ReadOffset.lastConsumed())
+                                Consumer.from(GROUP, w.name),
+                                StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(blockMs)),
+                                StreamOffset.create(w.stream,
+                                        scanning ? ReadOffset.from(w.scanCursor) : ReadOffset.lastConsumed())
                         );
 
+                if (scanning) {
+                    if (records == null || records.isEmpty()) {
+                        w.scanned = requested;
+                        w.scanCursor = "0-0";
+                    } else {
+                        w.scanCursor = records.get(records.size() - 1).getId().getValue();
+                    }
+                }
+
+                if (w.coalesce) {
+                    if (records != null) {
+                        absorb(w, records);
+                    }
+                    flushIfDue(w);
+                    continue;
+                }
+
                 if (records == null || records.isEmpty()) {
                     continue;
                 }
 
-                for (var msg : records) {
-                    process(msg);
+                if (!process(w.stream, records)) {
+                    w.scanRequested.incrementAndGet();
                 }
 
             } catch (Exception e) {
-                log.error("Main consumer loop error", e);
+                log.error("Stream consumer loop error consumer={}", w.name, e);
                 sleep(1000);
             }
         }
     }
 
-    // ---------- RETRY LOOP ----------
-    private void retryLoop() {
-        while (true) {
-            try {
+    // ---------- CLAIMER ----------
+    @Scheduled(fixedDelayString = "${app.leaderboard.persist.claim-interval-ms:30000}")
+    public void claimOrphans() {
 
-                if (!dbHealth.isAvailable()) {
-                    Thread.sleep(2000);
-                    continue;
-                }
+        if (workers.isEmpty() || !dbHealth.isAvailable()) {
+            return;
+        }
 
-                List<MapRecord<String, Object, Object>> records
-                        = redis.opsForStream().read(
-                                Consumer.from(GROUP, CONSUMER),
-                                StreamReadOptions.empty().count(10).block(Duration.ofSeconds(3)),
-                                StreamOffset.create(RETRY_STREAM, ReadOffset.lastConsumed())
-                        );
+        try {
+            // main-stream claims rotate over the workers, one per run
+            claim(workers.get(Math.floorMod(claimRound, workerCount)));
+            claim(workers.get(workerCount)); // retry worker
+            expireConsumers(STREAM_KEY);
+            expireConsumers(RETRY_STREAM);
+        } catch (Exception e) {
+            log.warn("Stream claimer failed", e);
+        }
+    }
 
-                if (records == null || records.isEmpty()) {
-                    continue;
-                }
+    /**
+     * XAUTOCLAIM ... JUSTID: moves ownership only (no delivery); the worker
+     * reads the entries from its pending list.
+     */
+    private void claim(Worker w) {
 
-                for (var msg : records) {
-                    try {
-                        persist.persistSnapshot(List.of(map(msg)));
-                        redis.opsForStream().acknowledge(RETRY_STREAM, GROUP, msg.getId());
-                    } catch (DataValidationException e) {
-                        moveToDLQ(msg);
-                        redis.opsForStream().acknowledge(RETRY_STREAM, GROUP, msg.getId());
-                    }
-                }
+        byte[] key = w.stream.getBytes(StandardCharsets.UTF_8);
+        byte[] group = GROUP.getBytes(StandardCharsets.UTF_8);
+        byte[] consumer = w.name.getBytes(StandardCharsets.UTF_8);
+        byte[] minIdle = Long.toString(claimMinIdleMs).getBytes(StandardCharsets.US_ASCII);
+        byte[] count = Integer.toString(CLAIM_COUNT).getBytes(StandardCharsets.US_ASCII);
 
-            } catch (Exception e) {
-                log.error("Retry loop error", e);
-                sleep(2000);
+        String cursor = "0-0";
+        int total = 0;
+
+        for (int page = 0; page < CLAIM_PAGES_PER_RUN; page++) {
+
+            byte[] start = cursor.getBytes(StandardCharsets.US_ASCII);
+            List<?> reply = redis.execute((RedisCallback<List<?>>) (RedisConnection conn) -> (List<?>) conn.execute(
+                    "XAUTOCLAIM", key, group, consumer, minIdle, start,
+                    "COUNT".getBytes(StandardCharsets.US_ASCII), count,
+                    "JUSTID".getBytes(StandardCharsets.US_ASCII)));
+
+            if (reply == null || reply.size() < 2) {
+                break;
+            }
+
+            total += ((List<?>) reply.get(1)).size();
+            cursor = new String((byte[]) reply.get(0), StandardCharsets.US_ASCII);
+
+            if ("0-0".equals(cursor)) {
+                break;
+            }
+        }
+
+        if (total > 0) {
+            log.warn(" Claimed {} orphaned entries of {} for {}", total, w.stream, w.name);
+            claimed.increment(total);
+            w.scanRequested.incrementAndGet();
+            if (w.stream.equals(STREAM_KEY)) {
+                claimRound++;
             }
         }
     }
 
-    private int getRetryCount(String id) {
-        Object retryObj = redis.opsForHash().get(RETRY_HASH, id);
-        return retryObj == null ? 0 : Integer.parseInt(retryObj.toString());
+    private void expireConsumers(String stream) {
+        StreamInfo.XInfoConsumers consumers = redis.opsForStream().consumers(stream, GROUP);
+        for (StreamInfo.XInfoConsumer c : consumers) {
+            if (c.pendingCount() == 0
+                    && c.idleTimeMs() > consumerExpireMs
+                    && !workersByName.containsKey(c.consumerName())) {
+                redis.opsForStream().deleteConsumer(stream, Consumer.from(GROUP, c.consumerName()));
+                log.info(" Removed idle consumer {} from {}", c.consumerName(), stream);
+            }
+        }
     }
 
-    private void process(MapRecord<String, Object, Object> msg) {
+    private record Pending(MapRecord<String, Object, Object> msg, BatchDTO row) {
+    }
 
-        String id = msg.getId().toString();
-        int retry = getRetryCount(id);
+    /**
+     * Persists one read in a single transaction and acknowledges it with one
+     * XACK. Retry bookkeeping only runs for records that failed.
+     *
+     * @return false if some records were left unacknowledged (DB down)
+     */
+    private boolean process(String stream, List<MapRecord<String, Object, Object>> records) {
 
         // ---- HARD BACKPRESSURE ----
         if (!dbHealth.isAvailable()) {
-            log.warn("⏸ DB DOWN → message kept in PEL");
+            log.warn("⏸ DB DOWN → {} messages kept in PEL", records.size());
+            return false;
+        }
+
+        List<RecordId> done = new ArrayList<>(records.size());
+        List<Pending> batch = new ArrayList<>(records.size());
+
+        for (var msg : records) {
+            try {
+                batch.add(new Pending(msg, map(msg)));
+            } catch (RuntimeException e) {
+                log.error(" Unreadable message → DLQ id={}", msg.getId());
+                moveToDLQ(msg);
+                done.add(msg.getId());
+            }
+        }
+
+        write(batch, done);
+        acknowledge(stream, done);
+        return done.size() == records.size();
+    }
+
+    /**
+     * Write-behind: keeps only the latest entry per portfolio. Superseded
+     * entries stay unacknowledged until the state that replaced them is
+     * written, so a crash before the flush loses nothing (the PEL keeps
+     * them). A pending-list re-read can bring back older entries: they
+     * never replace a newer one.
+     */
+    private void absorb(Worker w, List<MapRecord<String, Object, Object>> records) {
+
+        List<RecordId> unreadable = new ArrayList<>();
+
+        for (var msg : records) {
+            BatchDTO row;
+            try {
+                row = map(msg);
+            } catch (RuntimeException e) {
+                log.error(" Unreadable message → DLQ id={}", msg.getId());
+                moveToDLQ(msg);
+                unreadable.add(msg.getId());
+                continue;
+            }
+
+            Slot slot = w.coalesced.computeIfAbsent(row.getPid(), pid -> new Slot());
+            if (slot.latest == null || newer(msg.getId(), slot.latest.msg().getId())) {
+                slot.latest = new Pending(msg, row);
+            }
+            slot.ids.add(msg.getId());
+        }
+
+        acknowledge(w.stream, unreadable);
+    }
+
+    private static boolean newer(RecordId a, RecordId b) {
+        return a.getTimestamp() != b.getTimestamp()
+                ? a.getTimestamp() > b.getTimestamp()
+                : a.getSequence() > b.getSequence();
+    }
+
+    /**
+     * One batch with one row per portfolio changed since the last flush,
+     * then one XACK for every entry it covers. Rows the DB did not take
+     * (DB down mid-flush) keep their entries for the next flush.
+     */
+    private void flushIfDue(Worker w) {
+
+        long now = System.nanoTime();
+        if (w.coalesced.isEmpty() || now - w.lastFlushNanos < coalesceIntervalMs * 1_000_000) {
             return;
         }
+        w.lastFlushNanos = now;
 
-        try {
-            persist.persistSnapshot(List.of(map(msg)));
+        if (!dbHealth.isAvailable()) {
+            return;
+        }
 
-            redis.opsForStream().acknowledge(STREAM_KEY, GROUP, id);
-            redis.opsForHash().delete(RETRY_HASH, id);
+        List<Pending> batch = new ArrayList<>(w.coalesced.size());
+        for (Slot slot : w.coalesced.values()) {
+            batch.add(slot.latest);
+        }
 
-        } // ---------- DATA ERROR → DLQ IMMEDIATELY ----------
-        catch (DataValidationException e) {
-            log.error(" Data error → DLQ id={}", id);
+        List<RecordId> done = new ArrayList<>(batch.size());
+        write(batch, done);
 
-            moveToDLQ(msg);
-            redis.opsForStream().acknowledge(STREAM_KEY, GROUP, id);
-            redis.opsForHash().delete(RETRY_HASH, id);
+        Set<RecordId> handled = new HashSet<>(done);
+        List<RecordId> ack = new ArrayList<>();
+        w.coalesced.values().removeIf(slot -> {
+            if (!handled.contains(slot.latest.msg().getId())) {
+                return false;
+            }
+            ack.addAll(slot.ids);
+            return true;
+        });
 
-        } // ---------- TRANSIENT ERROR → RETRY ----------
-        catch (TransientDbException e) {
+        acknowledge(w.stream, ack);
+    }
 
-            if (retry + 1 >= MAX_RETRIES) {
-                log.error("❌ Retries exhausted → DLQ id={}", id);
+    private void acknowledge(String stream, List<RecordId> ids) {
+        if (!ids.isEmpty()) {
+            redis.opsForStream().acknowledge(stream, GROUP, ids.toArray(RecordId[]::new));
+        }
+    }
 
-                moveToDLQ(msg);
-                redis.opsForStream().acknowledge(STREAM_KEY, GROUP, id);
-                redis.opsForHash().delete(RETRY_HASH, id);
+    private void write(List<Pending> batch, List<RecordId> done) {
 
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // DB went down mid-split: the rest stays in PEL
+        if (!dbHealth.isAvailable()) {
+            return;
+        }
+
+        try {
+            List<BatchDTO> rows = batch.stream().map(Pending::row).toList();
+            if (writeMode == SnapshotWriteMode.COPY) {
+                copyWriter.write(rows);
             } else {
-                log.warn("🔁 Retry {} for id={}", retry + 1, id);
+                persist.persistSnapshot(rows);
+            }
+            batch.forEach(p -> done.add(p.msg().getId()));
 
-                redis.opsForHash().increment(RETRY_HASH, id, 1);
-                redis.opsForStream().acknowledge(STREAM_KEY, GROUP, id);
-                redis.opsForStream().add(RETRY_STREAM, msg.getValue());
+        } // ---------- DATA ERROR → SPLIT UNTIL ISOLATED, THEN DLQ ----------
+        catch (DataValidationException e) {
+
+            if (batch.size() == 1) {
+                MapRecord<String, Object, Object> msg = batch.get(0).msg();
+                log.error(" Data error → DLQ id={}", msg.getId());
+                moveToDLQ(msg);
+                done.add(msg.getId());
+                return;
+            }
+
+            int half = batch.size() / 2;
+            write(batch.subList(0, half), done);
+            write(batch.subList(half, batch.size()), done);
+
+        } // ---------- TRANSIENT ERROR → RETRY ----------
+        catch (TransientDbException e) {
+            for (Pending p : batch) {
+                retry(p.msg());
+                done.add(p.msg().getId());
             }
         }
     }
 
+    // the attempt count travels with the message on the retry stream
+    private void retry(MapRecord<String, Object, Object> msg) {
+
+        Object retriesObj = msg.getValue().get(RETRIES_FIELD);
+        int retries = retriesObj == null ? 1 : Integer.parseInt(retriesObj.toString()) + 1;
+
+        if (retries >= MAX_RETRIES) {
+            log.error("❌ Retries exhausted → DLQ id={}", msg.getId());
+            moveToDLQ(msg);
+            return;
+        }
+
+        log.warn("🔁 Retry {} for id={}", retries, msg.getId());
+
+        Map<Object, Object> value = new HashMap<>(msg.getValue());
+        value.put(RETRIES_FIELD, Integer.toString(retries));
+        redis.opsForStream().add(RETRY_STREAM, value);
+    }
+
     // ---------- DLQ ----------
     private void moveToDLQ(MapRecord<String, Object, Object> msg) {
         log.error("❌ MOVING TO DLQ id={}", msg.getId());
@@ -206,7 +538,8 @@ public class LeaderboardStreamConsumer {
                 Long.parseLong(v.get("rank").toString()),
                 new BigDecimal(v.get("avgRateOfReturn").toString()),
                 new BigDecimal(v.get("sharpeRatio").toString()),
-                new BigDecimal(v.get("sortinoRatio").toString())
+                new BigDecimal(v.get("sortinoRatio").toString()),
+                v.get("updatedAt") == null ? Instant.now() : Instant.parse(v.get("updatedAt").toString())
         );
     }
 
@@ -0,0 +1,362 @@
+package com.pms.leaderboard.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.pms.leaderboard.dto.LeaderboardDTO;
+import com.pms.leaderboard.dto.ViewSpec;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-process top-{@code capacity} copy of the Redis leaderboard.
+ *
+ * Fed from two sides:
+ * - this instance's successful Redis writes ({@link #apply}), immediately;
+ * - a full reload from Redis every refresh interval ({@link #replace}),
+ *   which brings in other instances' partitions and repairs the tail.
+ *
+ * Bounded staleness: reads are served from memory only while the last
+ * reload (or check that Redis has not changed, {@link #confirm}) is younger
+ * than {@code max-staleness-ms}; otherwise (cold start, Redis trouble)
+ * {@link #top} returns null and the caller goes to Redis.
+ *
+ * Every change bumps {@link #generation()} and notifies the change
+ * listeners, so publishers push on change instead of polling. Reloads only
+ * run while someone reads the view ({@link #inDemand()}).
+ */
+@Component
+public class LeaderboardView {
+
+    @Value("${app.leaderboard.view.capacity:500}")
+    private int capacity;
+
+    @Value("${app.leaderboard.view.max-staleness-ms:2000}")
+    private long maxStalenessMs;
+
+    // no reads for this long → stop reloading from Redis
+    @Value("${app.leaderboard.view.idle-after-ms:10000}")
+    private long idleAfterMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    public record Entry(
+            UUID portfolioId,
+            double compositeScore,
+            double avgReturn,
+            double sharpe,
+            double sortino,
+            String updated
+    ) {
+    }
+
+    /**
+     * Immutable ranked rows plus portfolio → row index. {@code complete}:
+     * the whole board fits in the view, so "not here" means "not ranked".
+     * Slice methods return null when the answer needs rows past capacity.
+     */
+    public record Ranked(List<LeaderboardDTO> rows, Map<UUID, Integer> index, boolean complete) {
+
+        public List<LeaderboardDTO> range(int offset, int n) {
+            int size = rows.size();
+            if (offset + n > size && !complete) {
+                return null;
+            }
+            return rows.subList(Math.min(offset, size), Math.min(offset + n, size));
+        }
+
+        public List<LeaderboardDTO> around(UUID portfolioId, int range) {
+            Integer i = index.get(portfolioId);
+            if (i == null) {
+                return complete ? List.of() : null;
+            }
+            int size = rows.size();
+            if (i + range + 1 > size && !complete) {
+                return null;
+            }
+            return rows.subList(Math.max(0, i - range), Math.min(size, i + range + 1));
+        }
+
+        public List<LeaderboardDTO> members(List<UUID> portfolioIds) {
+            List<Integer> found = new ArrayList<>(portfolioIds.size());
+            for (UUID pid : portfolioIds) {
+                Integer i = index.get(pid);
+                if (i != null) {
+                    found.add(i);
+                } else if (!complete) {
+                    return null;
+                }
+            }
+            found.sort(null);
+            List<LeaderboardDTO> out = new ArrayList<>(found.size());
+            for (int i : found) {
+                out.add(rows.get(i));
+            }
+            return out;
+        }
+
+        public List<LeaderboardDTO> slice(ViewSpec spec) {
+            return switch (spec.type()) {
+                case TOP -> range(spec.offset(), spec.n());
+                case AROUND -> around(spec.portfolioId(), spec.range());
+                case WATCH -> members(spec.portfolioIds());
+            };
+        }
+    }
+
+    private static final Comparator<Entry> RANK_ORDER = Comparator
+            .comparingDouble((Entry e) -> e.compositeScore()).reversed()
+            .thenComparing(Entry::portfolioId);
+
+    // guarded by this
+    private final Map<UUID, Entry> byId = new HashMap<>();
+    private final TreeSet<Entry> ranked = new TreeSet<>(RANK_ORDER);
+    // local writes since the last reload → when they were applied
+    private final Map<UUID, Long> appliedAt = new HashMap<>();
+    private volatile boolean dirty;
+
+    // immutable, republished on read after changes
+    private volatile Ranked snapshot = new Ranked(List.of(), Map.of(), true);
+    private volatile long lastReloadNanos;
+    private volatile long lastReadNanos;
+
+    // bumped on every change; redisGeneration = Redis counter at last reload
+    private volatile long generation;
+    private volatile long redisGeneration = -1;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("leaderboard.view.staleness.ms", this,
+                v -> v.lastReloadNanos == 0 ? -1 : (System.nanoTime() - v.lastReloadNanos) / 1e6)
+                .description("Age of the last full reload of the in-process leaderboard view")
+                .register(meterRegistry);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public long redisGeneration() {
+        return redisGeneration;
+    }
+
+    /**
+     * Called after every change, on the writing thread: must not block.
+     */
+    public void onChange(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Marks the view as read, keeping reloads running.
+     */
+    public void touch() {
+        lastReadNanos = System.nanoTime();
+    }
+
+    public boolean inDemand() {
+        long read = lastReadNanos;
+        return read != 0 && System.nanoTime() - read <= idleAfterMs * 1_000_000;
+    }
+
+    /**
+     * Top {@code n} ranked rows, or null if the view cannot answer within the
+     * staleness bound (cold start, failed reloads, n beyond capacity).
+     */
+    public List<LeaderboardDTO> top(int n) {
+
+        if (n > capacity) {
+            return null;
+        }
+
+        Ranked r = ranked();
+        return r == null ? null : r.range(0, n);
+    }
+
+    /**
+     * Current ranking, or null if it is outside the staleness bound.
+     */
+    public Ranked ranked() {
+
+        touch();
+
+        long reloaded = lastReloadNanos;
+        if (reloaded == 0 || System.nanoTime() - reloaded > maxStalenessMs * 1_000_000) {
+            return null;
+        }
+
+        return publish();
+    }
+
+    /**
+     * Rows this instance just wrote to Redis.
+     */
+    public void apply(Entry[] entries) {
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Entry e : entries) {
+                if (e != null) {
+                    put(e);
+                    appliedAt.put(e.portfolioId(), now);
+                }
+            }
+            dirty = true;
+            generation++;
+        }
+        changed();
+    }
+
+    /**
+     * Redis generation still {@link #redisGeneration()} as of
+     * {@code startedNanos}: the view is as fresh as a reload would make it.
+     */
+    public void confirm(long startedNanos) {
+        lastReloadNanos = startedNanos;
+    }
+
+    /**
+     * Full reload of Redis state at {@code redisGen}. {@code startedNanos} is
+     * when the Redis read began: local writes applied after it are newer than
+     * the reload and are kept.
+     */
+    public void replace(List<Entry> fromRedis, long startedNanos, long redisGen) {
+        synchronized (this) {
+            replaceLocked(fromRedis, startedNanos);
+            redisGeneration = redisGen;
+            generation++;
+        }
+        changed();
+    }
+
+    private void replaceLocked(List<Entry> fromRedis, long startedNanos) {
+
+        Map<UUID, Long> newer = new HashMap<>();
+        List<Entry> newerEntries = new ArrayList<>();
+        appliedAt.forEach((pid, at) -> {
+            Entry e = byId.get(pid);
+            if (at > startedNanos && e != null) {
+                newer.put(pid, at);
+                newerEntries.add(e);
+            }
+        });
+
+        byId.clear();
+        ranked.clear();
+        appliedAt.clear();
+        for (Entry e : fromRedis) {
+            put(e);
+        }
+        for (Entry e : newerEntries) {
+            put(e);
+        }
+        appliedAt.putAll(newer);
+
+        dirty = true;
+        lastReloadNanos = startedNanos;
+    }
+
+    /**
+     * Ranked entries, for the replication feed.
+     */
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(ranked);
+    }
+
+    /**
+     * Change from the replication feed: counts as a reload for staleness,
+     * since the leader's view is as fresh as its own reloads.
+     */
+    public void sync(List<Entry> upserts, List<UUID> removed, long redisGen) {
+        synchronized (this) {
+            for (UUID pid : removed) {
+                Entry old = byId.remove(pid);
+                if (old != null) {
+                    ranked.remove(old);
+                    appliedAt.remove(pid);
+                }
+            }
+            for (Entry e : upserts) {
+                put(e);
+            }
+            redisGeneration = redisGen;
+            lastReloadNanos = System.nanoTime();
+            if (upserts.isEmpty() && removed.isEmpty()) {
+                return; // heartbeat
+            }
+            dirty = true;
+            generation++;
+        }
+        changed();
+    }
+
+    private void changed() {
+        for (Runnable l : listeners) {
+            l.run();
+        }
+    }
+
+    private void put(Entry e) {
+
+        Entry old = byId.put(e.portfolioId(), e);
+        if (old != null) {
+            ranked.remove(old);
+        }
+        ranked.add(e);
+
+        // beyond capacity → not in the top view any more
+        while (ranked.size() > capacity) {
+            UUID evicted = ranked.pollLast().portfolioId();
+            byId.remove(evicted);
+            appliedAt.remove(evicted);
+        }
+    }
+
+    private Ranked publish() {
+
+        if (!dirty) {
+            return snapshot;
+        }
+
+        synchronized (this) {
+            if (dirty) {
+                List<LeaderboardDTO> rows = new ArrayList<>(ranked.size());
+                Map<UUID, Integer> index = new HashMap<>(ranked.size() * 2);
+                long rank = 1;
+                for (Entry e : ranked) {
+                    index.put(e.portfolioId(), rows.size());
+                    rows.add(new LeaderboardDTO(
+                            rank++,
+                            e.portfolioId(),
+                            e.compositeScore(),
+                            e.avgReturn(),
+                            e.sharpe(),
+                            e.sortino(),
+                            e.updated()
+                    ));
+                }
+                snapshot = new Ranked(List.copyOf(rows), Map.copyOf(index), rows.size() < capacity);
+                dirty = false;
+            }
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.pms.leaderboard.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.annotation.PostConstruct;
+
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware.ConsumerSeekCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-partition "applied up to" offsets, stored in Redis next to the
+ * leaderboard.
+ *
+ * Every poll opens one {@link Token} per partition; each buffered event holds
+ * it until its Redis write succeeds or a newer event for the same portfolio
+ * supersedes it. A partition's watermark is the last offset of the longest
+ * prefix of fully released tokens, so everything at or below it is in Redis.
+ *
+ * The watermark rides along with the next batch script call (never ahead of
+ * what is applied) and is flushed on its own when the stream goes idle.
+ * On assignment each partition seeks to watermark + 1; redelivered records
+ * at or below the watermark are skipped.
+ */
+@Component
+public class OffsetWatermarks {
+
+    private static final Logger log = LoggerFactory.getLogger(OffsetWatermarks.class);
+
+    private static final String KEY_PREFIX = "leaderboard:offsets:";
+
+    @Value("${app.kafka.risk-topic}")
+    private String topic;
+
+    @Autowired
+    private StringRedisTemplate redis;
+
+    @Autowired
+    private RedisLeaderboardScript rscript;
+
+    private String key;
+    private byte[] keyBytes;
+
+    private final ConcurrentHashMap<Integer, Partition> partitions = new ConcurrentHashMap<>();
+
+    // the callback passed to registerSeekCallback on each consumer thread:
+    // it queues seeks, which that consumer applies on its next poll
+    private final ThreadLocal<ConsumerSeekCallback> queuingCallback = new ThreadLocal<>();
+
+    // owned partition → its consumer's queuing callback; safe from any thread
+    // (the assignment callback seeks the KafkaConsumer directly, so it is
+    // only used inside onAssigned)
+    private final ConcurrentHashMap<TopicPartition, ConsumerSeekCallback> seekCallbacks = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        key = KEY_PREFIX + topic;
+        keyBytes = key.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public byte[] keyBytes() {
+        return keyBytes;
+    }
+
+    /**
+     * Tracks one listener poll; see {@link Poll}.
+     */
+    public Poll beginPoll() {
+        return new Poll();
+    }
+
+    // owned partition, or an untracked one if records precede the assignment
+    private Partition partition(int partition) {
+        return partitions.computeIfAbsent(partition, Partition::new);
+    }
+
+    // ---------- REBALANCE ----------
+    // ConsumerSeekAware.registerSeekCallback / unregisterSeekCallback, consumer thread
+    public void registerSeekCallback(ConsumerSeekCallback callback) {
+        queuingCallback.set(callback);
+    }
+
+    public void unregisterSeekCallback() {
+        queuingCallback.remove();
+    }
+
+    /**
+     * On the consumer thread, from onPartitionsAssigned; {@code callback}
+     * seeks immediately and must not leave this call.
+     */
+    public void onAssigned(Collection<TopicPartition> assigned, ConsumerSeekCallback callback) {
+
+        ConsumerSeekCallback queuing = queuingCallback.get();
+        for (TopicPartition tp : assigned) {
+            if (queuing != null) {
+                seekCallbacks.put(tp, queuing);
+            } else {
+                seekCallbacks.remove(tp);
+                log.warn("No seek callback registered for {} — it will not rewind after an outage", tp);
+            }
+        }
+
+        List<Object> fields = new ArrayList<>(assigned.size());
+        for (TopicPartition tp : assigned) {
+            fields.add(String.valueOf(tp.partition()));
+        }
+
+        List<Object> stored;
+        try {
+            stored = redis.opsForHash().multiGet(key, fields);
+        } catch (Exception e) {
+            log.warn("Offset watermarks unavailable — keeping committed offsets for {}", assigned, e);
+            for (TopicPartition tp : assigned) {
+                partitions.put(tp.partition(), new Partition(tp.partition()));
+            }
+            return;
+        }
+
+        int i = 0;
+        for (TopicPartition tp : assigned) {
+            Object v = stored.get(i++);
+            Partition p = new Partition(tp.partition());
+            if (v != null) {
+                p.applied = Long.parseLong(v.toString());
+                p.flushed = p.applied;
+                callback.seek(tp.topic(), tp.partition(), p.applied + 1);
+                log.info(" Partition {} seeks to applied watermark+1={}", tp, p.applied + 1);
+            }
+            partitions.put(tp.partition(), p);
+        }
+    }
+
+    public void onRevoked(Collection<TopicPartition> revoked) {
+        for (TopicPartition tp : revoked) {
+            partitions.remove(tp.partition());
+            seekCallbacks.remove(tp);
+        }
+    }
+
+    /**
+     * After an outage: forget in-flight polls (their failed writes will never
+     * release) and seek every owned partition back to watermark + 1.
+     * Partitions without a known watermark keep their fetch position. Any
+     * thread: the seeks are queued and run on each consumer's next poll.
+     */
+    public int rewind() {
+        int rewound = 0;
+        for (var e : seekCallbacks.entrySet()) {
+            TopicPartition tp = e.getKey();
+            Partition old = partitions.get(tp.partition());
+            Partition fresh = new Partition(tp.partition());
+            if (old != null) {
+                fresh.applied = old.advance();
+                fresh.flushed = old.flushed;
+            }
+            partitions.put(tp.partition(), fresh);
+            if (fresh.applied >= 0) {
+                e.getValue().seek(tp.topic(), tp.partition(), fresh.applied + 1);
+                rewound++;
+            }
+        }
+        return rewound;
+    }
+
+    // ---------- PERSISTENCE ----------
+    /**
+     * [partition, watermark] pairs for the batch script; only partitions that
+     * advanced past what Redis already has.
+     */
+    public List<byte[]> pendingArgs() {
+        List<byte[]> out = new ArrayList<>();
+        for (Partition p : partitions.values()) {
+            long applied = p.advance();
+            if (applied > p.flushed) {
+                out.add(String.valueOf(p.id).getBytes(StandardCharsets.US_ASCII));
+                out.add(String.valueOf(applied).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Called once a script carrying {@code args} succeeded.
+     */
+    public void flushed(List<byte[]> args) {
+        for (int i = 0; i < args.size(); i += 2) {
+            Partition p = partitions.get(Integer.parseInt(new String(args.get(i), StandardCharsets.US_ASCII)));
+            long v = Long.parseLong(new String(args.get(i + 1), StandardCharsets.US_ASCII));
+            if (p != null && v > p.flushed) {
+                p.flushed = v;
+            }
+        }
+    }
+
+    // idle stream: the last batch's release is not followed by another write
+    @Scheduled(fixedDelay = 1000)
+    public void flushIdle() {
+
+        List<byte[]> args = pendingArgs();
+        if (args.isEmpty()) {
+            return;
+        }
+
+        byte[][] keysAndArgs = new byte[1 + args.size()][];
+        keysAndArgs[0] = keyBytes;
+        for (int i = 0; i < args.size(); i++) {
+            keysAndArgs[i + 1] = args.get(i);
+        }
+
+        try {
+            redis.execute((RedisCallback<Object>) connection
+                    -> rscript.executeAdvanceOffsets(connection, keysAndArgs));
+            flushed(args);
+        } catch (Exception e) {
+            log.debug("Offset watermark flush failed, retried next tick", e);
+        }
+    }
+
+    // ---------- STATE ----------
+    /**
+     * Listener-thread helper: one token per partition present in the poll.
+     * {@link #track} returns null for records already applied (skip them);
+     * {@link #seal} after the events are buffered, {@link #abandon} if the
+     * poll failed and will be redelivered.
+     */
+    public final class Poll {
+
+        private final List<Partition> owners = new ArrayList<>(2);
+        private final List<Token> tokens = new ArrayList<>(2);
+        private final List<Long> lastOffsets = new ArrayList<>(2);
+        private int current = -1;
+
+        private Poll() {
+        }
+
+        public Token track(int partition, long offset) {
+            if (current < 0 || owners.get(current).id != partition) {
+                current = indexOf(partition);
+            }
+            lastOffsets.set(current, offset);
+            Partition p = owners.get(current);
+            return p.isApplied(offset) ? null : tokens.get(current);
+        }
+
+        private int indexOf(int partition) {
+            for (int i = 0; i < owners.size(); i++) {
+                if (owners.get(i).id == partition) {
+                    return i;
+                }
+            }
+            Partition p = partition(partition);
+            owners.add(p);
+            tokens.add(p.open());
+            lastOffsets.add(-1L);
+            return owners.size() - 1;
+        }
+
+        public void seal() {
+            for (int i = 0; i < tokens.size(); i++) {
+                tokens.get(i).seal(lastOffsets.get(i));
+            }
+        }
+
+        public void abandon() {
+            for (int i = 0; i < tokens.size(); i++) {
+                owners.get(i).close(tokens.get(i));
+            }
+        }
+    }
+
+    private static final class Partition {
+
+        private final int id;
+
+        // everything <= applied is in Redis; -1 = nothing known
+        private volatile long applied = -1;
+        private volatile long flushed = -1;
+
+        // one token per poll, in offset order; guarded by this
+        private final ArrayDeque<Token> open = new ArrayDeque<>();
+
+        private Partition(int id) {
+            this.id = id;
+        }
+
+        // redelivered record already reflected in Redis
+        private boolean isApplied(long offset) {
+            return offset <= applied;
+        }
+
+        private synchronized Token open() {
+            Token t = new Token();
+            open.addLast(t);
+            return t;
+        }
+
+        // redelivery reopens these offsets under a later token
+        private synchronized void close(Token t) {
+            open.remove(t);
+        }
+
+        private synchronized long advance() {
+            Token head;
+            while ((head = open.peekFirst()) != null && head.remaining.get() == 0) {
+                open.pollFirst();
+                if (head.lastOffset > applied) {
+                    applied = head.lastOffset;
+                }
+            }
+            return applied;
+        }
+    }
+
+    public static final class Token {
+
+        // +1 held by the listener until seal()
+        private final AtomicInteger remaining = new AtomicInteger(1);
+        private volatile long lastOffset = -1;
+
+        private Token() {
+        }
+
+        public void retain() {
+            remaining.incrementAndGet();
+        }
+
+        // all records up to lastOffset are buffered (or were skipped)
+        private void seal(long lastOffset) {
+            this.lastOffset = lastOffset;
+            remaining.decrementAndGet();
+        }
+
+        /**
+         * One event applied to Redis, dropped as invalid, or superseded.
+         */
+        public void release() {
+            remaining.decrementAndGet();
+        }
+
+        @Override
+        public String toString() {
+            return "Token[lastOffset=" + lastOffset + ", remaining=" + remaining.get() + "]";
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.pms.leaderboard.services;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.hibernate.PropertyValueException;
+import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.exception.DataException;
+import org.hibernate.exception.LockAcquisitionException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.CannotAcquireLockException;
 import org.springframework.dao.DataIntegrityViolationException;
@@ -16,10 +18,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.pms.leaderboard.dto.BatchDTO;
 import com.pms.leaderboard.entities.Leaderboard_Snapshot;
+import com.pms.leaderboard.entities.UuidV7;
 import com.pms.leaderboard.exceptions.DataValidationException;
 import com.pms.leaderboard.exceptions.TransientDbException;
-import com.pms.leaderboard.repositories.LeaderboardSnapshotRepository;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PessimisticLockException;
 import jakarta.persistence.QueryTimeoutException;
 
 @Service
@@ -28,23 +33,28 @@ public class PersistSnapshot {
     private static final Logger log =
             LoggerFactory.getLogger(PersistSnapshot.class);
 
-    @Autowired
-    private LeaderboardSnapshotRepository snapshotRepo;
+    @PersistenceContext
+    private EntityManager em;
 
     @Autowired
     private DbHealth dbHealth;
 
+    /**
+     * One transaction for the whole batch. Ids are new, so rows go straight
+     * to persist (saveAll would merge: one SELECT per row) and leave in
+     * hibernate.jdbc.batch_size statements on flush. Flushing here keeps
+     * constraint errors inside the classification below.
+     */
     @Transactional
     public void persistSnapshot(List<BatchDTO> rows) {
 
         try {
             Instant stamp = Instant.now();
-            List<Leaderboard_Snapshot> snapshots = new ArrayList<>();
 
             for (BatchDTO r : rows) {
 
                 Leaderboard_Snapshot snap = new Leaderboard_Snapshot();
-                snap.setHistoryId(UUID.randomUUID());
+                snap.setHistoryId(UuidV7.next());
                 snap.setPortfolioId(r.getPid());
                 snap.setPortfolioScore(r.getScore());
                 snap.setLeaderboardRanking(r.getRank());
@@ -52,17 +62,19 @@ public class PersistSnapshot {
                 snap.setSharpeRatio(r.getSharpeRatio());
                 snap.setSortinoRatio(r.getSortinoRatio());
                 snap.setUpdatedAt(stamp);
+                snap.setEventAt(r.getEventAt() != null ? r.getEventAt() : stamp);
 
-                snapshots.add(snap);
+                em.persist(snap);
             }
 
-            snapshotRepo.saveAll(snapshots);
+            em.flush();
+            em.clear();
 
             if (!dbHealth.isAvailable()) {
                 dbHealth.up();
             }
 
-            log.info(" DB COMMIT OK rows={}", snapshots.size());
+            log.info(" DB COMMIT OK rows={}", rows.size());
 
         }
         // ---------- DATA ERRORS (NO RETRY) ----------
@@ -77,11 +89,35 @@ public class PersistSnapshot {
             log.warn(" Transient DB failure", e);
             throw new TransientDbException(e);
         }
-        // ---------- UNKNOWN DB ERRORS (TREAT AS TRANSIENT) ----------
         catch (Exception e) {
+
+            // em.flush() is not behind a repository proxy: Hibernate's
+            // exceptions arrive untranslated, possibly wrapped
+            if (causedBy(e, ConstraintViolationException.class, DataException.class, PropertyValueException.class)) {
+                log.error(" Data integrity violation", e);
+                throw new DataValidationException("Invalid leaderboard data");
+            }
+            if (causedBy(e, LockAcquisitionException.class, PessimisticLockException.class,
+                    org.hibernate.QueryTimeoutException.class)) {
+                log.warn(" Transient DB failure", e);
+                throw new TransientDbException(e);
+            }
+
+            // ---------- UNKNOWN DB ERRORS (TREAT AS TRANSIENT) ----------
             dbHealth.down();
             log.error(" Unknown DB failure", e);
             throw new TransientDbException(e);
         }
     }
+
+    private static boolean causedBy(Throwable e, Class<?>... types) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            for (Class<?> type : types) {
+                if (type.isInstance(t)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
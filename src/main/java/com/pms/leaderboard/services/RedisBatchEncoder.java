@@ -0,0 +1,149 @@
+package com.pms.leaderboard.services;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds the raw EVALSHA arguments for
+ * {@link RedisLeaderboardScript#batchUpsertAndRank()}.
+ *
+ * Per portfolio only five doubles are written, into one packed little-endian
+ * buffer shared by the whole batch. Member and hash-key bytes are encoded
+ * once per portfolio and cached, so the steady state allocates per batch,
+ * never per event.
+ */
+@Component
+public class RedisBatchEncoder {
+
+    public static final int DOUBLES_PER_ROW = 5;
+    private static final int ROW_BYTES = DOUBLES_PER_ROW * Double.BYTES;
+
+    private final ConcurrentHashMap<UUID, PortfolioKey> keys = new ConcurrentHashMap<>();
+
+    private record PortfolioKey(byte[] member, byte[] hashKey) {
+    }
+
+    public Batch begin(
+            int capacity,
+            byte[] zkey,
+            byte[] streamKey,
+            byte[] offsetsKey,
+            byte[] generationKey,
+            byte[] updatedAt
+    ) {
+        return new Batch(capacity, zkey, streamKey, offsetsKey, generationKey, updatedAt);
+    }
+
+    private PortfolioKey key(UUID pid, String hashKeyPrefix) {
+        PortfolioKey k = keys.get(pid);
+        if (k == null) {
+            String member = pid.toString();
+            k = keys.computeIfAbsent(pid, p -> new PortfolioKey(
+                    member.getBytes(StandardCharsets.US_ASCII),
+                    (hashKeyPrefix + member).getBytes(StandardCharsets.US_ASCII)
+            ));
+        }
+        return k;
+    }
+
+    /**
+     * One script call. Layout:
+     * KEYS = [zset, stream, offsets, generation, hash_1..hash_n],
+     * ARGV = [updatedAt, packed(composite, score, sharpe, sortino, avg)*n,
+     * member_1..member_n, (partition, offset)*].
+     */
+    public final class Batch {
+
+        private final byte[] zkey;
+        private final byte[] streamKey;
+        private final byte[] offsetsKey;
+        private final byte[] generationKey;
+        private final byte[] updatedAt;
+        private final byte[][] hashKeys;
+        private final byte[][] members;
+        private final ByteBuffer packed;
+        private List<byte[]> watermarks = List.of();
+        private int size;
+
+        private Batch(
+                int capacity,
+                byte[] zkey,
+                byte[] streamKey,
+                byte[] offsetsKey,
+                byte[] generationKey,
+                byte[] updatedAt
+        ) {
+            this.zkey = zkey;
+            this.streamKey = streamKey;
+            this.offsetsKey = offsetsKey;
+            this.generationKey = generationKey;
+            this.updatedAt = updatedAt;
+            this.hashKeys = new byte[capacity][];
+            this.members = new byte[capacity][];
+            this.packed = ByteBuffer.allocate(capacity * ROW_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public void add(
+                UUID pid,
+                String hashKeyPrefix,
+                double compositeScore,
+                double score,
+                double sharpeRatio,
+                double sortinoRatio,
+                double avgRateOfReturn
+        ) {
+            PortfolioKey k = key(pid, hashKeyPrefix);
+            hashKeys[size] = k.hashKey();
+            members[size] = k.member();
+            packed.putDouble(compositeScore)
+                    .putDouble(score)
+                    .putDouble(sharpeRatio)
+                    .putDouble(sortinoRatio)
+                    .putDouble(avgRateOfReturn);
+            size++;
+        }
+
+        /**
+         * [partition, offset] pairs from {@link OffsetWatermarks#pendingArgs()}.
+         */
+        public void watermarks(List<byte[]> pairs) {
+            this.watermarks = pairs;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int numKeys() {
+            return 4 + size;
+        }
+
+        public byte[][] keysAndArgs() {
+            byte[][] out = new byte[4 + size + 2 + size + watermarks.size()][];
+            int i = 0;
+            out[i++] = zkey;
+            out[i++] = streamKey;
+            out[i++] = offsetsKey;
+            out[i++] = generationKey;
+            System.arraycopy(hashKeys, 0, out, i, size);
+            i += size;
+            out[i++] = updatedAt;
+            out[i++] = packed.array().length == packed.position()
+                    ? packed.array()
+                    : Arrays.copyOf(packed.array(), packed.position());
+            System.arraycopy(members, 0, out, i, size);
+            i += size;
+            for (byte[] w : watermarks) {
+                out[i++] = w;
+            }
+            return out;
+        }
+    }
+}
@@ -1,16 +1,260 @@
 package com.pms.leaderboard.services;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 @Component
 public class RedisLeaderboardScript {
 
-    public RedisScript<Long> upsertAndRank() {
-        return RedisScript.of("""
+    // Built once: the SHA1 is computed on first use and reused for EVALSHA.
+    // KEYS[1] = ZSET, KEYS[2] = generation counter
+    private final RedisScript<Long> upsertAndRank = RedisScript.of("""
             redis.call('ZADD', KEYS[1], tonumber(ARGV[1]), ARGV[2])
+            redis.call('INCR', KEYS[2])
             return redis.call('ZREVRANK', KEYS[1], ARGV[2])
         """, Long.class);
+
+    /**
+     * Whole-batch write in one round trip. Arguments are built by
+     * {@link RedisBatchEncoder}:
+     *
+     * KEYS[1] = leaderboard ZSET, KEYS[2] = stream, KEYS[3] = offset
+     * watermarks hash, KEYS[4] = generation counter, KEYS[5..] = one hash
+     * per portfolio. ARGV[1] =
+     * updatedAt, ARGV[2] = 5 little-endian doubles per portfolio (composite,
+     * score, sharpe, sortino, avgReturn), ARGV[3..n+2] = portfolio ids,
+     * ARGV[n+3..] = [partition, applied offset] pairs.
+     *
+     * All ZADDs run first so every returned rank reflects the full batch.
+     * Every double is written with 17 significant digits (round-trips,
+     * unlike tostring's 14), so the stream carries the full value to Postgres.
+     * Watermarks only move forward, in the same atomic call as the rows.
+     * The generation counter is bumped once per batch so readers can tell
+     * "unchanged" without reading the ZSET.
+     */
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> batchUpsertAndRank = RedisScript.of("""
+            local n = #KEYS - 4
+            local now = ARGV[1]
+            local packed = ARGV[2]
+            local rows = {}
+            local pos = 1
+            for i = 1, n do
+                local composite, score, sharpe, sortino, avg
+                composite, score, sharpe, sortino, avg, pos =
+                    struct.unpack('<ddddd', packed, pos)
+                rows[i] = {
+                    string.format('%.17g', score), string.format('%.17g', sharpe),
+                    string.format('%.17g', sortino), string.format('%.17g', avg)
+                }
+                redis.call('ZADD', KEYS[1], string.format('%.17g', composite), ARGV[i + 2])
+            end
+            local ranks = {}
+            for i = 1, n do
+                local pid = ARGV[i + 2]
+                local r = rows[i]
+                local rank = redis.call('ZREVRANK', KEYS[1], pid)
+                redis.call('HSET', KEYS[i + 4],
+                    'score', r[1],
+                    'sharpeRatio', r[2],
+                    'sortinoRatio', r[3],
+                    'avgRateOfReturn', r[4],
+                    'updatedAt', now)
+                redis.call('XADD', KEYS[2], '*',
+                    'portfolioId', pid,
+                    'score', r[1],
+                    'rank', tostring(rank + 1),
+                    'avgRateOfReturn', r[4],
+                    'sharpeRatio', r[2],
+                    'sortinoRatio', r[3],
+                    'updatedAt', now)
+                ranks[i] = rank
+            end
+            for j = n + 3, #ARGV, 2 do
+                local cur = tonumber(redis.call('HGET', KEYS[3], ARGV[j]))
+                if not cur or tonumber(ARGV[j + 1]) > cur then
+                    redis.call('HSET', KEYS[3], ARGV[j], ARGV[j + 1])
+                end
+            end
+            redis.call('INCR', KEYS[4])
+            return ranks
+        """, List.class);
+
+    // KEYS[1] = offset watermarks hash, ARGV = [partition, offset] pairs
+    private final RedisScript<Long> advanceOffsets = RedisScript.of("""
+            for j = 1, #ARGV, 2 do
+                local cur = tonumber(redis.call('HGET', KEYS[1], ARGV[j]))
+                if not cur or tonumber(ARGV[j + 1]) > cur then
+                    redis.call('HSET', KEYS[1], ARGV[j], ARGV[j + 1])
+                end
+            end
+            return 0
+        """, Long.class);
+
+    // Read side: ranked slice + each row's metrics in one round trip. Reply
+    // is flat, 6 values per row: member, score, avgRateOfReturn, sharpeRatio,
+    // sortinoRatio, updatedAt. Missing hash fields come back as nil. Hash keys
+    // are derived from ARGV, which is fine on a single master (Sentinel), not
+    // on Redis Cluster.
+    private static final String HYDRATE = """
+            local function hydrate(out, slice, prefix)
+                for i = 1, #slice, 2 do
+                    local h = redis.call('HMGET', prefix .. slice[i],
+                        'avgRateOfReturn', 'sharpeRatio', 'sortinoRatio', 'updatedAt')
+                    out[#out + 1] = slice[i]
+                    out[#out + 1] = slice[i + 1]
+                    out[#out + 1] = h[1]
+                    out[#out + 1] = h[2]
+                    out[#out + 1] = h[3]
+                    out[#out + 1] = h[4]
+                end
+                return out
+            end
+            """;
+
+    // KEYS[1] = ZSET, ARGV = start, stop, hash key prefix
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> rangeWithMetrics = RedisScript.of(HYDRATE + """
+            local slice = redis.call('ZREVRANGE', KEYS[1], ARGV[1], ARGV[2], 'WITHSCORES')
+            return hydrate({}, slice, ARGV[3])
+        """, List.class);
+
+    // KEYS[1] = ZSET, KEYS[2] = generation counter,
+    // ARGV = start, stop, hash key prefix, generation the caller already has
+    // → { generation } if unchanged, else { generation, rows... }
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> rangeIfChanged = RedisScript.of(HYDRATE + """
+            local gen = redis.call('GET', KEYS[2]) or '0'
+            if gen == ARGV[4] then
+                return { gen }
+            end
+            local slice = redis.call('ZREVRANGE', KEYS[1], ARGV[1], ARGV[2], 'WITHSCORES')
+            return hydrate({ gen }, slice, ARGV[3])
+        """, List.class);
+
+    // KEYS[1] = ZSET, ARGV = member, range, hash key prefix
+    // → { centerRank, rows... } or {} when the member is not ranked
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> aroundWithMetrics = RedisScript.of(HYDRATE + """
+            local center = redis.call('ZREVRANK', KEYS[1], ARGV[1])
+            if not center then
+                return {}
+            end
+            local range = tonumber(ARGV[2])
+            local start = math.max(0, center - range)
+            local slice = redis.call('ZREVRANGE', KEYS[1], start, center + range, 'WITHSCORES')
+            return hydrate({ center }, slice, ARGV[3])
+        """, List.class);
+
+    // KEYS[1] = ZSET, ARGV = hash key prefix, member...
+    // → { rank, member, score, metrics... } per ranked member, in rank order;
+    // unranked members are left out
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> membersWithMetrics = RedisScript.of(HYDRATE + """
+            local found = {}
+            for i = 2, #ARGV do
+                local rank = redis.call('ZREVRANK', KEYS[1], ARGV[i])
+                if rank then
+                    found[#found + 1] = { rank, ARGV[i] }
+                end
+            end
+            table.sort(found, function(a, b) return a[1] < b[1] end)
+            local out = {}
+            for _, f in ipairs(found) do
+                out[#out + 1] = f[1]
+                hydrate(out, { f[2], redis.call('ZSCORE', KEYS[1], f[2]) }, ARGV[1])
+            end
+            return out
+        """, List.class);
+
+    public RedisScript<Long> upsertAndRank() {
+        return upsertAndRank;
+    }
+
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> batchUpsertAndRank() {
+        return batchUpsertAndRank;
+    }
+
+    /**
+     * EVALSHA with raw byte arguments, falling back to EVAL once if the
+     * script is not cached on the server (restart / failover).
+     */
+    public List<Object> executeBatch(RedisConnection connection, int numKeys, byte[][] keysAndArgs) {
+        return evalCached(connection, batchUpsertAndRank, ReturnType.MULTI, numKeys, keysAndArgs);
     }
-    
+
+    public List<Object> executeRange(RedisConnection connection, byte[] zkey, long start, long stop, byte[] hashKeyPrefix) {
+        return evalCached(connection, rangeWithMetrics, ReturnType.MULTI, 1,
+                new byte[][]{zkey, ascii(start), ascii(stop), hashKeyPrefix});
+    }
+
+    public List<Object> executeRangeIfChanged(
+            RedisConnection connection,
+            byte[] zkey,
+            byte[] generationKey,
+            long start,
+            long stop,
+            byte[] hashKeyPrefix,
+            long knownGeneration
+    ) {
+        return evalCached(connection, rangeIfChanged, ReturnType.MULTI, 2,
+                new byte[][]{zkey, generationKey, ascii(start), ascii(stop), hashKeyPrefix, ascii(knownGeneration)});
+    }
+
+    public List<Object> executeAround(RedisConnection connection, byte[] zkey, byte[] member, int range, byte[] hashKeyPrefix) {
+        return evalCached(connection, aroundWithMetrics, ReturnType.MULTI, 1,
+                new byte[][]{zkey, member, ascii(range), hashKeyPrefix});
+    }
+
+    public List<Object> executeMembers(RedisConnection connection, byte[] zkey, byte[] hashKeyPrefix, byte[][] members) {
+        byte[][] keysAndArgs = new byte[2 + members.length][];
+        keysAndArgs[0] = zkey;
+        keysAndArgs[1] = hashKeyPrefix;
+        System.arraycopy(members, 0, keysAndArgs, 2, members.length);
+        return evalCached(connection, membersWithMetrics, ReturnType.MULTI, 1, keysAndArgs);
+    }
+
+    private static byte[] ascii(long v) {
+        return Long.toString(v).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public Long executeAdvanceOffsets(RedisConnection connection, byte[][] keysAndArgs) {
+        return evalCached(connection, advanceOffsets, ReturnType.INTEGER, 1, keysAndArgs);
+    }
+
+    private static <T> T evalCached(
+            RedisConnection connection,
+            RedisScript<?> script,
+            ReturnType returnType,
+            int numKeys,
+            byte[][] keysAndArgs
+    ) {
+        try {
+            return connection.scriptingCommands().evalSha(
+                    script.getSha1(), returnType, numKeys, keysAndArgs);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            return connection.scriptingCommands().eval(
+                    script.getScriptAsString().getBytes(),
+                    returnType, numKeys, keysAndArgs);
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
@@ -6,11 +6,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;         
 import org.springframework.stereotype.Component;
 
-import com.pms.leaderboard.config.EventBuffer;
 import com.pms.leaderboard.events.RedisDownEvent;
 import com.pms.leaderboard.events.RedisUpEvent;
 
-
+/**
+ * Single listener for Redis health transitions. Consumers are paused, not
+ * stopped, so recovery needs no rebalance.
+ */
 @Component
 public class RedisRecoveryOrchestrator {
 
@@ -18,34 +20,23 @@ public class RedisRecoveryOrchestrator {
             LoggerFactory.getLogger(RedisRecoveryOrchestrator.class);
 
     @Autowired
-    private EventBuffer buffer;
-
-    @Autowired
-    private KafkaReplayService replayService;
+    private KafkaFlowControl flowControl;
 
     // REDIS DOWN
     @EventListener
     public void onRedisDown(RedisDownEvent ev) {
 
-        log.error(" Redis DOWN — stopping Kafka consumers");
+        log.error(" Redis DOWN — pausing Kafka partitions");
 
-        replayService.stopConsumers();
+        flowControl.onOutage();
     }
 
     // REDIS UP
     @EventListener
     public void onRedisUp(RedisUpEvent ev) {
 
-        log.info(" Redis UP — waiting for buffer drain...");
-
-        while (!buffer.isEmpty()) {
-            try {
-                Thread.sleep(500);
-            } catch (InterruptedException ignored) {}
-        }
-
-        log.info(" Buffer drained — starting replay");
+        log.info(" Redis UP — rewinding to applied watermarks and resuming");
 
-        replayService.replay();
+        flowControl.onRecovered();
     }
 }
@@ -1,7 +1,5 @@
 package com.pms.leaderboard.services;
 
-import java.math.BigDecimal;
-import java.time.Instant;
 import java.util.UUID;
 
 import org.springframework.stereotype.Service;
@@ -9,17 +7,33 @@ import org.springframework.stereotype.Service;
 @Service
 public class RedisScoreService {
 
+    private static final double RETURN_WEIGHT = 50;
+    private static final double SHARPE_WEIGHT = 30;
+    private static final double SORTINO_WEIGHT = 20;
+
+    /**
+     * Weighted portfolio score. Primitive math only — this runs once per
+     * event on the hot path.
+     */
+    public double baseScore(
+            double avgRateOfReturn,
+            double sharpeRatio,
+            double sortinoRatio
+    ) {
+        return avgRateOfReturn * RETURN_WEIGHT
+                + sharpeRatio * SHARPE_WEIGHT
+                + sortinoRatio * SORTINO_WEIGHT;
+    }
+
     public double compositeScore(
-            BigDecimal baseScore,
-            Instant eventTime,
+            double baseScore,
+            long eventTimeMillis,
             UUID portfolioId
     ) {
-        double base = baseScore.doubleValue();
-        long ts = eventTime.toEpochMilli();
-        double stampFraction = (ts % 1000) / 1e9;
+        double stampFraction = (eventTimeMillis % 1000) / 1e9;
         int idHash = Math.abs(portfolioId.hashCode() % 1000);
         double hashFrac = idHash / 1e12;
-        return base + stampFraction + hashFrac;
+        return baseScore + stampFraction + hashFrac;
     }
 
 }
@@ -0,0 +1,19 @@
+package com.pms.leaderboard.services;
+
+/**
+ * How {@link LeaderboardService#processBatch} applies a batch to Redis.
+ */
+public enum RedisWriteMode {
+
+    /**
+     * One task per portfolio: EVAL + HSET per field + XADD (~7 round trips
+     * per event). Kept for comparison under load.
+     */
+    PER_PORTFOLIO,
+
+    /**
+     * The whole coalesced batch in a single script call (1 round trip per
+     * batch).
+     */
+    BATCH
+}
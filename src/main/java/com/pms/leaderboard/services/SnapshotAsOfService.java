@@ -0,0 +1,156 @@
+package com.pms.leaderboard.services;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.pms.leaderboard.dto.LeaderboardDTO;
+import com.pms.leaderboard.exceptions.BadRequestException;
+
+/**
+ * The ranked board as it was at a past instant: the latest snapshot (by
+ * event time) per portfolio written at or before it, ordered by score
+ * (ties by portfolio id).
+ *
+ * Reads the keyframe before the instant plus at most one keyframe
+ * interval of snapshots ({@link SnapshotKeyframes#BOARD}); only the
+ * requested slice leaves the database.
+ */
+@Service
+public class SnapshotAsOfService {
+
+    // top: top-N heap over the board, no full ranking
+    private static final String TOP = SnapshotKeyframes.BOARD + """
+            SELECT b.portfolio_id, b.portfolio_score, b.avg_rate_of_return,
+                   b.sharpe_ratio, b.sortino_ratio, b.event_at,
+                   :offset + row_number() OVER (ORDER BY b.portfolio_score DESC, b.portfolio_id) AS rank
+            FROM (
+                SELECT * FROM board
+                ORDER BY portfolio_score DESC, portfolio_id
+                OFFSET :offset LIMIT :limit
+            ) b
+            ORDER BY rank
+            """;
+
+    // around: rank the board once, slice around the portfolio's rank
+    private static final String AROUND = SnapshotKeyframes.BOARD + """
+            , ranked AS (
+                SELECT b.*, row_number() OVER (ORDER BY b.portfolio_score DESC, b.portfolio_id) AS rank
+                FROM board b
+            )
+            SELECT r.portfolio_id, r.portfolio_score, r.avg_rate_of_return,
+                   r.sharpe_ratio, r.sortino_ratio, r.event_at, r.rank
+            FROM ranked r, (SELECT rank FROM ranked WHERE portfolio_id = :portfolioId) c
+            WHERE r.rank BETWEEN c.rank - :range AND c.rank + :range
+            ORDER BY r.rank
+            """;
+
+    private static final RowMapper<LeaderboardDTO> ROW = (rs, i) -> new LeaderboardDTO(
+            rs.getLong("rank"),
+            rs.getObject("portfolio_id", UUID.class),
+            rs.getBigDecimal("portfolio_score").doubleValue(),
+            rs.getBigDecimal("avg_rate_of_return").doubleValue(),
+            rs.getBigDecimal("sharpe_ratio").doubleValue(),
+            rs.getBigDecimal("sortino_ratio").doubleValue(),
+            rs.getTimestamp("event_at").toInstant().toString()
+    );
+
+    @Value("${app.leaderboard.as-of.max-rows:1000}")
+    private int maxRows;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private SnapshotKeyframes keyframes;
+
+    public Map<String, Object> top(String at, int offset, int n) {
+
+        if (n < 1 || offset < 0 || n > maxRows) {
+            throw new BadRequestException("top must be 1.." + maxRows + " and offset >= 0", null);
+        }
+
+        Instant t = instant(at);
+        Instant keyframe = keyframe(t);
+
+        List<LeaderboardDTO> rows = jdbc.query(TOP, Map.of(
+                "keyframe", SnapshotKeyframes.ts(keyframe),
+                "at", SnapshotKeyframes.ts(t),
+                "offset", offset,
+                "limit", n), ROW);
+
+        return response(t, keyframe, null, rows);
+    }
+
+    public Map<String, Object> around(String at, String portfolioId, int range) {
+
+        if (range < 0 || 2 * range + 1 > maxRows) {
+            throw new BadRequestException("range must be 0.." + (maxRows - 1) / 2, null);
+        }
+
+        UUID pid;
+        try {
+            pid = UUID.fromString(portfolioId);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("invalid portfolioId: " + portfolioId, e);
+        }
+
+        Instant t = instant(at);
+        Instant keyframe = keyframe(t);
+
+        List<LeaderboardDTO> rows = jdbc.query(AROUND, Map.of(
+                "keyframe", SnapshotKeyframes.ts(keyframe),
+                "at", SnapshotKeyframes.ts(t),
+                "portfolioId", pid,
+                "range", range), ROW);
+
+        Long centerRank = rows.stream()
+                .filter(r -> r.getPortfolioId().equals(pid))
+                .map(LeaderboardDTO::getRank)
+                .findFirst()
+                .orElse(null);
+
+        return response(t, keyframe, centerRank, rows);
+    }
+
+    private static Instant instant(String at) {
+        try {
+            return Instant.parse(at);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("invalid at: " + at, e);
+        }
+    }
+
+    // before the first keyframe there is no bounded way to rebuild the board
+    private Instant keyframe(Instant t) {
+        Instant keyframe = keyframes.latest(t);
+        if (keyframe == null) {
+            Instant earliest = keyframes.earliest();
+            throw new BadRequestException(earliest == null
+                    ? "no as-of history yet"
+                    : "as-of history starts at " + earliest, null);
+        }
+        return keyframe;
+    }
+
+    private static Map<String, Object> response(Instant at, Instant keyframe, Long centerRank, List<LeaderboardDTO> rows) {
+        Map<String, Object> out = new HashMap<>();
+        out.put("event", "leaderboardAsOf");
+        out.put("timestamp", Instant.now().toEpochMilli());
+        out.put("at", at.toString());
+        out.put("keyframe", keyframe.toString());
+        if (centerRank != null) {
+            out.put("centerRank", centerRank);
+        }
+        out.put("top", rows);
+        return out;
+    }
+}
@@ -0,0 +1,245 @@
+package com.pms.leaderboard.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+
+import com.pms.leaderboard.dto.BatchDTO;
+import com.pms.leaderboard.entities.UuidV7;
+import com.pms.leaderboard.exceptions.DataValidationException;
+import com.pms.leaderboard.exceptions.TransientDbException;
+
+/**
+ * Bulk writer for leaderboard_snapshot: the whole batch goes to Postgres as
+ * one {@code COPY ... FROM STDIN (FORMAT binary)}. No per-row statement,
+ * bind or text parsing on the server; the COPY is a single statement, so a
+ * batch is written entirely or not at all.
+ *
+ * Errors are split like {@link PersistSnapshot}: integrity / data errors
+ * (SQLSTATE 23, 22) → {@link DataValidationException}, lock and timeout
+ * errors → {@link TransientDbException}, anything else marks the database
+ * down and is treated as transient.
+ */
+@Service
+public class SnapshotCopyWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCopyWriter.class);
+
+    private static final String COPY_SQL = """
+            COPY leaderboard_snapshot (history_id, portfolio_id, portfolio_score, leaderboard_ranking,
+                                       avg_rate_of_return, sharpe_ratio, sortino_ratio, updated_at, event_at)
+            FROM STDIN (FORMAT binary)
+            """;
+
+    private static final short COLUMNS = 9;
+
+    // PGCOPY\n\377\r\n\0, flags, header extension length
+    private static final byte[] HEADER = {
+        'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0,
+        0, 0, 0, 0,
+        0, 0, 0, 0
+    };
+
+    // 2000-01-01T00:00:00Z, the Postgres timestamp epoch, in unix micros
+    private static final long PG_EPOCH_MICROS = 946_684_800_000_000L;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private DbHealth dbHealth;
+
+    public void write(List<BatchDTO> rows) {
+
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        byte[] payload;
+        try {
+            payload = encode(rows, Instant.now());
+        } catch (IOException | RuntimeException e) {
+            log.error(" Snapshot COPY encoding failed", e);
+            throw new DataValidationException("Invalid leaderboard data");
+        }
+
+        Connection conn = DataSourceUtils.getConnection(dataSource);
+        CopyIn copy = null;
+        try {
+            copy = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            copy.writeToCopy(payload, 0, payload.length);
+            long written = copy.endCopy();
+
+            if (!dbHealth.isAvailable()) {
+                dbHealth.up();
+            }
+
+            log.info(" DB COPY OK rows={} bytes={}", written, payload.length);
+
+        } catch (SQLException e) {
+            cancel(copy);
+            throw classify(e);
+        } finally {
+            DataSourceUtils.releaseConnection(conn, dataSource);
+        }
+    }
+
+    private RuntimeException classify(SQLException e) {
+
+        String state = e.getSQLState() == null ? "" : e.getSQLState();
+
+        // ---------- DATA ERRORS (NO RETRY) ----------
+        if (state.startsWith("23") || state.startsWith("22")) {
+            log.error(" Data integrity violation sqlState={}", state, e);
+            return new DataValidationException("Invalid leaderboard data");
+        }
+
+        // ---------- TRANSIENT DB ERRORS (RETRY) ----------
+        // serialization failure, deadlock, lock not available, statement timeout
+        if (state.equals("40001") || state.equals("40P01") || state.equals("55P03") || state.equals("57014")) {
+            log.warn(" Transient DB failure sqlState={}", state, e);
+            return new TransientDbException(e);
+        }
+
+        // ---------- UNKNOWN DB ERRORS (TREAT AS TRANSIENT) ----------
+        dbHealth.down();
+        log.error(" Unknown DB failure sqlState={}", state, e);
+        return new TransientDbException(e);
+    }
+
+    private static void cancel(CopyIn copy) {
+        if (copy == null || !copy.isActive()) {
+            return;
+        }
+        try {
+            copy.cancelCopy();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    // ---------- BINARY COPY ENCODING ----------
+    static byte[] encode(List<BatchDTO> rows, Instant stamp) throws IOException {
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(HEADER.length + rows.size() * 160 + 2);
+        DataOutputStream out = new DataOutputStream(buf);
+
+        out.write(HEADER);
+
+        long updatedAt = micros(stamp);
+
+        for (BatchDTO r : rows) {
+            out.writeShort(COLUMNS);
+            uuid(out, UuidV7.at(stamp.toEpochMilli()));
+            uuid(out, r.getPid());
+            numeric(out, r.getScore());
+            out.writeInt(8);
+            out.writeLong(r.getRank());
+            numeric(out, r.getAvgRateOfReturn());
+            numeric(out, r.getSharpeRatio());
+            numeric(out, r.getSortinoRatio());
+            out.writeInt(8);
+            out.writeLong(updatedAt);
+            out.writeInt(8);
+            out.writeLong(r.getEventAt() != null ? micros(r.getEventAt()) : updatedAt);
+        }
+
+        out.writeShort(-1);
+        return buf.toByteArray();
+    }
+
+    // timestamptz: micros since the Postgres epoch
+    static long micros(Instant t) {
+        return t.getEpochSecond() * 1_000_000 + t.getNano() / 1_000 - PG_EPOCH_MICROS;
+    }
+
+    private static void uuid(DataOutputStream out, UUID v) throws IOException {
+        if (v == null) {
+            out.writeInt(-1); // NOT NULL → 23502
+            return;
+        }
+        out.writeInt(16);
+        out.writeLong(v.getMostSignificantBits());
+        out.writeLong(v.getLeastSignificantBits());
+    }
+
+    /**
+     * numeric_recv layout: ndigits, weight, sign, dscale (int16 each), then
+     * ndigits base-10000 digits; weight is the power of 10000 of the first.
+     */
+    static void numeric(DataOutputStream out, BigDecimal v) throws IOException {
+
+        if (v == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        if (v.scale() < 0) {
+            v = v.setScale(0);
+        }
+        int dscale = v.scale();
+
+        if (v.signum() == 0) {
+            out.writeInt(8);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(0);
+            out.writeShort(dscale);
+            return;
+        }
+
+        // align the digit string on base-10000 groups around the decimal point
+        String digits = v.unscaledValue().abs().toString();
+        int fracPad = (4 - dscale % 4) % 4;
+        int intLen = digits.length() - dscale;
+        int intPad = intLen > 0 ? (4 - intLen % 4) % 4 : -intLen;
+        int len = intPad + digits.length() + fracPad;
+
+        int groups = len / 4;
+        short[] base10k = new short[groups];
+        for (int g = 0; g < groups; g++) {
+            int d = 0;
+            for (int i = g * 4; i < g * 4 + 4; i++) {
+                int at = i - intPad;
+                d = d * 10 + (at >= 0 && at < digits.length() ? digits.charAt(at) - '0' : 0);
+            }
+            base10k[g] = (short) d;
+        }
+
+        int weight = intLen > 0 ? (intLen + intPad) / 4 - 1 : -1;
+        int first = 0;
+        while (base10k[first] == 0) {
+            first++;
+            weight--;
+        }
+        int last = groups - 1;
+        while (base10k[last] == 0) {
+            last--;
+        }
+        int ndigits = last - first + 1;
+
+        out.writeInt(8 + ndigits * 2);
+        out.writeShort(ndigits);
+        out.writeShort(weight);
+        out.writeShort(v.signum() < 0 ? 0x4000 : 0);
+        out.writeShort(dscale);
+        for (int g = first; g <= last; g++) {
+            out.writeShort(base10k[g]);
+        }
+    }
+}
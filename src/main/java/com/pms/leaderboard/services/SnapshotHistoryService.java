@@ -0,0 +1,113 @@
+package com.pms.leaderboard.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pms.leaderboard.dto.RankHistoryPoint;
+import com.pms.leaderboard.exceptions.BadRequestException;
+import com.pms.leaderboard.repositories.LeaderboardSnapshotRepository;
+
+/**
+ * Rank / score history of one portfolio from leaderboard_snapshot,
+ * downsampled in the database and written to the response as rows arrive
+ * (no entity list, no intermediate collection).
+ */
+@Service
+public class SnapshotHistoryService {
+
+    public record HistoryQuery(UUID portfolioId, Instant from, Instant to, Duration step) {
+    }
+
+    @Value("${app.leaderboard.history.max-points:5000}")
+    private long maxPoints;
+
+    @Value("${app.leaderboard.history.default-range:30d}")
+    private String defaultRange;
+
+    @Autowired
+    private LeaderboardSnapshotRepository snapshotRepo;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    /**
+     * Validates before anything is written, so errors still map to 400.
+     * from defaults to to - default-range, to to now, step to 1h.
+     */
+    public HistoryQuery query(String portfolioId, String from, String to, String step) {
+
+        UUID pid = parse("portfolioId", portfolioId, UUID::fromString);
+        Instant end = to == null ? Instant.now() : parse("to", to, Instant::parse);
+        Instant start = from == null
+                ? end.minus(parse("default-range", defaultRange, DurationStyle::detectAndParse))
+                : parse("from", from, Instant::parse);
+        Duration bucket = step == null ? Duration.ofHours(1) : parse("step", step, DurationStyle::detectAndParse);
+
+        if (!start.isBefore(end)) {
+            throw new BadRequestException("from must be before to", null);
+        }
+        if (bucket.toSeconds() < 1) {
+            throw new BadRequestException("step must be at least 1s", null);
+        }
+        long points = Duration.between(start, end).toSeconds() / bucket.toSeconds() + 1;
+        if (points > maxPoints) {
+            throw new BadRequestException("range / step gives " + points + " points, max " + maxPoints, null);
+        }
+
+        return new HistoryQuery(pid, start, end, bucket);
+    }
+
+    @Transactional(readOnly = true)
+    public void writeHistory(HistoryQuery q, OutputStream out) throws IOException {
+
+        try (Stream<RankHistoryPoint> points = snapshotRepo.streamHistory(
+                q.portfolioId(), q.from(), q.to(), q.step().toSeconds() + " seconds");
+                JsonGenerator json = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+
+            json.writeStartObject();
+            json.writeStringField("event", "leaderboardHistory");
+            json.writeStringField("portfolioId", q.portfolioId().toString());
+            json.writeStringField("from", q.from().toString());
+            json.writeStringField("to", q.to().toString());
+            json.writeStringField("step", q.step().toString());
+
+            json.writeArrayFieldStart("points");
+            for (RankHistoryPoint p : (Iterable<RankHistoryPoint>) points::iterator) {
+                json.writeStartObject();
+                json.writeStringField("bucket", Instant.ofEpochMilli(p.getBucketMs()).toString());
+                json.writeStringField("updated", Instant.ofEpochMilli(p.getEventMs()).toString());
+                json.writeNumberField("rank", p.getRank());
+                json.writeNumberField("score", p.getScore());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+
+            json.writeEndObject();
+        }
+    }
+
+    private interface Parser<T> {
+        T parse(String value);
+    }
+
+    private static <T> T parse(String name, String value, Parser<T> parser) {
+        try {
+            return parser.parse(value);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("invalid " + name + ": " + value, e);
+        }
+    }
+}
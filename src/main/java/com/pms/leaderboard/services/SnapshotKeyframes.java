@@ -0,0 +1,201 @@
+package com.pms.leaderboard.services;
+
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodic keyframes of the board for as-of queries
+ * ({@link SnapshotAsOfService}).
+ *
+ * The board at T is the latest leaderboard_snapshot row (by event_at) per
+ * portfolio among those written at or before T. Rebuilding that from raw
+ * history touches every partition;
+ * instead, every keyframe-interval (aligned, UTC) the lease holder stores
+ * it in leaderboard_keyframe, computed from the previous keyframe plus the
+ * rows after it ({@link #BOARD}). Any as-of query then reads one keyframe
+ * and at most one interval of snapshots.
+ *
+ * A keyframe is built settle after its instant, so rows stamped before it
+ * have committed. Rows are stamped with their write time, so a late one
+ * (claimed, retried) falls into the interval it was written in and is
+ * picked up by the next keyframe; its older event_at keeps it from
+ * replacing a newer state. The first one (no previous keyframe) reads the whole
+ * table once. Missed keyframes are caught up oldest first, a bounded
+ * number per run; keyframes older than the snapshot retention are deleted.
+ * Builds run on their own thread and stop as soon as the lease is lost.
+ */
+@Component
+public class SnapshotKeyframes {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotKeyframes.class);
+
+    private static final int MAX_BUILDS_PER_RUN = 24;
+
+    /**
+     * Board as of :at from keyframe :keyframe (null = none): each
+     * portfolio's latest event among its keyframe row and the rows written
+     * in (keyframe, at]. Those are one interval of rows, found through
+     * the updated_at BRIN index in the last partition or two.
+     */
+    static final String BOARD = """
+            WITH candidates AS (
+                SELECT s.portfolio_id, s.portfolio_score, s.avg_rate_of_return,
+                       s.sharpe_ratio, s.sortino_ratio, s.updated_at,
+                       COALESCE(s.event_at, s.updated_at) AS event_at
+                FROM leaderboard_snapshot s
+                WHERE s.updated_at > COALESCE(:keyframe, TIMESTAMPTZ '-infinity')
+                  AND s.updated_at <= :at
+                UNION ALL
+                SELECT k.portfolio_id, k.portfolio_score, k.avg_rate_of_return,
+                       k.sharpe_ratio, k.sortino_ratio, k.updated_at,
+                       COALESCE(k.event_at, k.updated_at)
+                FROM leaderboard_keyframe k
+                WHERE k.taken_at = :keyframe
+            ),
+            board AS (
+                SELECT DISTINCT ON (c.portfolio_id) c.*
+                FROM candidates c
+                ORDER BY c.portfolio_id, c.event_at DESC, c.updated_at DESC
+            )
+            """;
+
+    private static final String INSERT = BOARD + """
+            INSERT INTO leaderboard_keyframe (taken_at, portfolio_id, portfolio_score,
+                                              avg_rate_of_return, sharpe_ratio, sortino_ratio,
+                                              updated_at, event_at)
+            SELECT :at, b.portfolio_id, b.portfolio_score,
+                   b.avg_rate_of_return, b.sharpe_ratio, b.sortino_ratio,
+                   b.updated_at, b.event_at
+            FROM board b
+            ON CONFLICT (taken_at, portfolio_id) DO NOTHING
+            """;
+
+    private static final String LATEST = """
+            SELECT max(taken_at) FROM leaderboard_keyframe WHERE taken_at <= :at
+            """;
+
+    private static final String EARLIEST = """
+            SELECT min(taken_at) FROM leaderboard_keyframe
+            """;
+
+    private static final String DELETE_EXPIRED = """
+            DELETE FROM leaderboard_keyframe WHERE taken_at < :before
+            """;
+
+    @Value("${app.leaderboard.as-of.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.leaderboard.as-of.keyframe-interval:1h}")
+    private Duration interval;
+
+    @Value("${app.leaderboard.as-of.settle:1m}")
+    private Duration settle;
+
+    @Value("${app.leaderboard.snapshot-partitions.retention-days:30}")
+    private int retentionDays;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbc;
+
+    @Autowired
+    private LeaderLease lease;
+
+    @Autowired
+    @Qualifier("keyframeExecutor")
+    private ExecutorService keyframeExecutor;
+
+    // a run is submitted or building
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Latest keyframe at or before at, null if there is none.
+     */
+    public Instant latest(Instant at) {
+        return instant(jdbc.queryForObject(LATEST, Map.of("at", ts(at)), OffsetDateTime.class));
+    }
+
+    public Instant earliest() {
+        return instant(jdbc.queryForObject(EARLIEST, Map.of(), OffsetDateTime.class));
+    }
+
+    @Scheduled(fixedDelayString = "${app.leaderboard.as-of.build-check-ms:60000}")
+    public void build() {
+
+        // one builder cluster-wide; ON CONFLICT covers a lease handover
+        if (!enabled || !lease.isLeader() || !running.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            keyframeExecutor.execute(this::buildDue);
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            log.warn(" Keyframe build rejected", e);
+        }
+    }
+
+    private void buildDue() {
+        try {
+            Instant due = align(Instant.now().minus(settle));
+            Instant last = latest(due);
+
+            for (int i = 0; i < MAX_BUILDS_PER_RUN && (last == null || last.isBefore(due)); i++) {
+
+                if (!lease.isLeader()) {
+                    log.info(" Lease lost — keyframe build stops before {}", last == null ? due : last.plus(interval));
+                    return;
+                }
+
+                Instant at = last == null ? due : last.plus(interval);
+                long started = System.nanoTime();
+
+                int rows = jdbc.update(INSERT, Map.of("keyframe", ts(last), "at", ts(at)));
+
+                log.info(" Keyframe {} built from {} rows={} in {} ms",
+                        at, last, rows, (System.nanoTime() - started) / 1_000_000);
+                last = at;
+            }
+
+            int expired = jdbc.update(DELETE_EXPIRED,
+                    Map.of("before", ts(Instant.now().minus(Duration.ofDays(retentionDays)))));
+            if (expired > 0) {
+                log.info(" Deleted {} expired keyframe rows", expired);
+            }
+
+        } catch (Exception e) {
+            log.error(" Keyframe build failed", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private Instant align(Instant t) {
+        long step = interval.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(t.toEpochMilli(), step) * step);
+    }
+
+    private static Instant instant(OffsetDateTime t) {
+        return t == null ? null : t.toInstant();
+    }
+
+    static SqlParameterValue ts(Instant t) {
+        return new SqlParameterValue(Types.TIMESTAMP_WITH_TIMEZONE, t == null ? null : t.atOffset(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,309 @@
+package com.pms.leaderboard.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Owns the leaderboard_snapshot schema (Hibernate ddl-auto is off).
+ *
+ * The table is range-partitioned by day on updated_at (UTC), the write
+ * time; event_at is when Redis applied the update, which for a claimed or
+ * retried stream entry can be minutes earlier. Partitions
+ * are created days-ahead in advance, so inserts always hit a small,
+ * recently created table; retention drops whole partitions older than
+ * retention-days (a catalog operation, whatever the row count). Rows no
+ * daily partition covers (maintenance behind, a day already dropped) land
+ * in a DEFAULT partition instead of failing the COPY; createAhead moves
+ * them into their day's partition when it creates it, and retention
+ * deletes them from it.
+ *
+ * Rows arrive in time order, so updated_at is indexed with BRIN (a few
+ * pages per partition instead of a btree entry per row). history_id is a
+ * UUIDv7, already time-ordered under its primary key. Per-portfolio
+ * history reads use a (portfolio_id, updated_at) index carrying rank,
+ * score and event_at, so they are index-only. leaderboard_keyframe (periodic copies of
+ * the whole board for as-of queries) is created here too.
+ *
+ * A table left over from ddl-auto (not partitioned) is renamed to
+ * leaderboard_snapshot_legacy and attached as one partition up to the end
+ * of today; it is not covered by retention and can be dropped by hand.
+ *
+ * Maintenance that fails at startup (database not up yet) is retried every
+ * retry-ms until it succeeds, not left to the next cron run.
+ */
+@Component
+public class SnapshotPartitions {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotPartitions.class);
+
+    private static final String TABLE = "leaderboard_snapshot";
+    private static final String LEGACY = TABLE + "_legacy";
+    private static final String PREFIX = TABLE + "_p";
+    private static final String DEFAULT = TABLE + "_default";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.BASIC_ISO_DATE;
+
+    // column types as Hibernate generated them, so a legacy table attaches
+    private static final String CREATE_PARENT = """
+            CREATE TABLE IF NOT EXISTS leaderboard_snapshot (
+                history_id          uuid           NOT NULL,
+                portfolio_id        uuid           NOT NULL,
+                portfolio_score     numeric(38, 2) NOT NULL,
+                leaderboard_ranking bigint         NOT NULL,
+                avg_rate_of_return  numeric(38, 2) NOT NULL,
+                sharpe_ratio        numeric(38, 2) NOT NULL,
+                sortino_ratio       numeric(38, 2) NOT NULL,
+                updated_at          timestamptz(6) NOT NULL,
+                event_at            timestamptz(6),
+                PRIMARY KEY (history_id, updated_at)
+            ) PARTITION BY RANGE (updated_at)
+            """;
+
+    // tables created before event_at; null reads as updated_at
+    private static final String ADD_EVENT_AT = " ADD COLUMN IF NOT EXISTS event_at timestamptz(6)";
+
+    private static final String CREATE_BRIN = """
+            CREATE INDEX IF NOT EXISTS leaderboard_snapshot_updated_at_brin
+                ON leaderboard_snapshot USING brin (updated_at) WITH (pages_per_range = 32)
+            """;
+
+    // LeaderboardSnapshotRepository.streamHistory: index-only probes. The
+    // older index without event_at is replaced once, on the first startup
+    // after the upgrade (a full build over the existing partitions).
+    private static final String CREATE_HISTORY_INDEX = """
+            CREATE INDEX IF NOT EXISTS leaderboard_snapshot_history_idx
+                ON leaderboard_snapshot (portfolio_id, updated_at)
+                INCLUDE (leaderboard_ranking, portfolio_score, event_at)
+            """;
+    private static final String DROP_OLD_HISTORY_INDEX =
+            "DROP INDEX IF EXISTS leaderboard_snapshot_portfolio_updated_at_idx";
+
+    // SnapshotKeyframes: the whole board every keyframe-interval
+    private static final String CREATE_KEYFRAME = """
+            CREATE TABLE IF NOT EXISTS leaderboard_keyframe (
+                taken_at            timestamptz(6) NOT NULL,
+                portfolio_id        uuid           NOT NULL,
+                portfolio_score     numeric(38, 2) NOT NULL,
+                avg_rate_of_return  numeric(38, 2) NOT NULL,
+                sharpe_ratio        numeric(38, 2) NOT NULL,
+                sortino_ratio       numeric(38, 2) NOT NULL,
+                updated_at          timestamptz(6) NOT NULL,
+                event_at            timestamptz(6),
+                PRIMARY KEY (taken_at, portfolio_id)
+            )
+            """;
+
+    private static final String CREATE_DEFAULT
+            = "CREATE TABLE IF NOT EXISTS " + DEFAULT + " PARTITION OF " + TABLE + " DEFAULT";
+
+    // relkind: r = plain table, p = partitioned
+    private static final String RELKIND = """
+            SELECT c.relkind FROM pg_class c
+            WHERE c.oid = to_regclass(?)
+            """;
+
+    private static final String PARTITIONS = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            WHERE i.inhparent = 'leaderboard_snapshot'::regclass
+            """;
+
+    @Value("${app.leaderboard.snapshot-partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.leaderboard.snapshot-partitions.days-ahead:7}")
+    private int daysAhead;
+
+    @Value("${app.leaderboard.snapshot-partitions.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${app.leaderboard.snapshot-partitions.retry-ms:5000}")
+    private long retryMs;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private TaskScheduler taskScheduler;
+
+    private volatile boolean bootstrapped;
+
+    private volatile ScheduledFuture<?> retry;
+
+    // before LeaderboardStreamConsumer starts writing (@DependsOn)
+    @PostConstruct
+    public void init() {
+        if (enabled && !runMaintenance()) {
+            // writes fail (and are retried) until the schema exists
+            retry = taskScheduler.scheduleWithFixedDelay(this::retryMaintenance,
+                    Instant.now().plusMillis(retryMs), Duration.ofMillis(retryMs));
+        }
+    }
+
+    @Scheduled(cron = "${app.leaderboard.snapshot-partitions.cron:0 5 * * * *}", zone = "UTC")
+    public void maintain() {
+        if (enabled) {
+            // next run retries; days-ahead covers missed runs
+            runMaintenance();
+        }
+    }
+
+    private void retryMaintenance() {
+        if (runMaintenance()) {
+            log.info(" Snapshot partition maintenance succeeded after startup failure");
+            retry.cancel(false);
+        }
+    }
+
+    private synchronized boolean runMaintenance() {
+        try {
+            if (!bootstrapped) {
+                bootstrap();
+                bootstrapped = true;
+            }
+            createAhead();
+            dropExpired();
+            return true;
+        } catch (Exception e) {
+            log.error(" Snapshot partition maintenance failed", e);
+            return false;
+        }
+    }
+
+    // ---------- SCHEMA ----------
+    private void bootstrap() {
+
+        String kind = relkind(TABLE);
+
+        if ("r".equals(kind)) {
+            log.warn(" {} is not partitioned → renaming to {}", TABLE, LEGACY);
+            jdbc.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY);
+        }
+
+        jdbc.execute(CREATE_PARENT);
+        jdbc.execute("ALTER TABLE " + TABLE + ADD_EVENT_AT);
+        jdbc.execute(CREATE_BRIN);
+        jdbc.execute(CREATE_HISTORY_INDEX);
+        jdbc.execute(DROP_OLD_HISTORY_INDEX);
+        jdbc.execute(CREATE_KEYFRAME);
+        jdbc.execute("ALTER TABLE leaderboard_keyframe" + ADD_EVENT_AT);
+
+        if ("r".equals(kind)) {
+            attachLegacy();
+        }
+
+        // after the legacy attach, which would otherwise scan it
+        jdbc.execute(CREATE_DEFAULT);
+    }
+
+    private void attachLegacy() {
+        String upper = bound(today().plusDays(1));
+        try {
+            jdbc.execute("ALTER TABLE " + LEGACY + ADD_EVENT_AT);
+            jdbc.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY
+                    + " FOR VALUES FROM (MINVALUE) TO ('" + upper + "')");
+            log.info(" Attached {} up to {}", LEGACY, upper);
+        } catch (Exception e) {
+            log.error(" Could not attach {}: its rows stay out of {}", LEGACY, TABLE, e);
+        }
+    }
+
+    // ---------- PARTITIONS ----------
+    private void createAhead() {
+
+        List<String> existing = jdbc.queryForList(PARTITIONS, String.class);
+        boolean legacy = existing.contains(LEGACY);
+        LocalDate today = today();
+
+        // the legacy partition already covers today
+        for (LocalDate day = legacy ? today.plusDays(1) : today;
+                !day.isAfter(today.plusDays(daysAhead));
+                day = day.plusDays(1)) {
+
+            String name = PREFIX + SUFFIX.format(day);
+            if (existing.contains(name)) {
+                continue;
+            }
+
+            String from = bound(day);
+            String to = bound(day.plusDays(1));
+            String range = " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+            String where = " WHERE updated_at >= '" + from + "' AND updated_at < '" + to + "'";
+
+            Integer stray = jdbc.queryForObject("SELECT count(*) FROM " + DEFAULT + where, Integer.class);
+
+            if (stray == null || stray == 0) {
+                jdbc.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE + range);
+                log.info(" Created snapshot partition {}", name);
+                continue;
+            }
+
+            // creating it would fail the default partition's new constraint:
+            // move the day's rows out first, in one transaction
+            jdbc.execute("DO $$ BEGIN "
+                    + "CREATE TABLE " + name + " (LIKE " + TABLE + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS); "
+                    + "INSERT INTO " + name + " SELECT * FROM " + DEFAULT + where + "; "
+                    + "DELETE FROM " + DEFAULT + where + "; "
+                    + "ALTER TABLE " + TABLE + " ATTACH PARTITION " + name + range + "; "
+                    + "END $$");
+            log.warn(" Created snapshot partition {} with {} rows moved from {}", name, stray, DEFAULT);
+        }
+    }
+
+    private void dropExpired() {
+
+        LocalDate oldest = today().minusDays(retentionDays);
+
+        for (String name : jdbc.queryForList(PARTITIONS, String.class)) {
+
+            if (!name.startsWith(PREFIX)) {
+                continue;
+            }
+
+            LocalDate day;
+            try {
+                day = LocalDate.parse(name.substring(PREFIX.length()), SUFFIX);
+            } catch (Exception e) {
+                continue; // not one of ours
+            }
+
+            if (day.isBefore(oldest)) {
+                jdbc.execute("DROP TABLE IF EXISTS " + name);
+                log.info(" Dropped expired snapshot partition {}", name);
+            }
+        }
+
+        int expired = jdbc.update("DELETE FROM " + DEFAULT + " WHERE updated_at < '" + bound(oldest) + "'");
+        if (expired > 0) {
+            log.info(" Deleted {} expired rows from {}", expired, DEFAULT);
+        }
+    }
+
+    private String relkind(String table) {
+        List<String> kinds = jdbc.queryForList(RELKIND, String.class, table);
+        return kinds.isEmpty() ? null : kinds.get(0);
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private static String bound(LocalDate day) {
+        return day + " 00:00:00+00";
+    }
+}
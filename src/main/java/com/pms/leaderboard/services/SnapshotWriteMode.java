@@ -0,0 +1,19 @@
+package com.pms.leaderboard.services;
+
+/**
+ * How {@link LeaderboardStreamConsumer} writes a batch to
+ * leaderboard_snapshot.
+ */
+public enum SnapshotWriteMode {
+
+    /**
+     * {@link SnapshotCopyWriter}: one binary COPY statement per batch.
+     */
+    COPY,
+
+    /**
+     * {@link PersistSnapshot}: JPA persist with JDBC insert batching. Kept
+     * as a fallback (e.g. behind a pooler that does not pass COPY through).
+     */
+    JPA
+}
@@ -0,0 +1,508 @@
+package com.pms.leaderboard.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pms.leaderboard.dto.LeaderboardDTO;
+import com.pms.leaderboard.dto.ViewSpec;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Keeps every instance's {@link LeaderboardView} in sync while only the
+ * {@link LeaderLease} holder reads the leaderboard from Redis.
+ *
+ * Leader: reloads as usual and publishes its view on {@code FEED} as
+ * sequenced deltas (changed entries, removed ids), a heartbeat when idle,
+ * and a full copy on taking the lease or on a follower's resync request.
+ *
+ * Follower: applies the feed instead of reloading. Pub/sub is
+ * at-most-once, so a seq gap or new leader makes it ignore deltas and ask
+ * for a full copy. Without an applied message for {@code feed-timeout-ms}
+ * (no leader, broken subscription) it reloads from Redis itself until the
+ * feed resumes.
+ *
+ * Snapshot reads against Redis therefore come from one instance, however
+ * many serve WebSockets; each instance computes its own sessions' views
+ * from its in-memory copy.
+ *
+ * Views reaching past the view capacity (deep TOP, AROUND or WATCH of
+ * portfolios ranked beyond it) cannot be computed from that copy. Each
+ * instance announces its own on {@code DEMAND}; the leader reads every
+ * distinct one from Redis once per publish and ships the rows in the feed
+ * next to the deltas (changed slices and dropped keys, all of them in a
+ * full copy). At most {@code max-slices}: a view past that, or not
+ * published yet, is reported outside the replicated range instead of
+ * being shown empty.
+ */
+@Component
+public class ViewReplicator implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewReplicator.class);
+
+    private static final String FEED = "leaderboard:view:feed";
+    private static final String RESYNC = "leaderboard:view:resync";
+    private static final String DEMAND = "leaderboard:view:demand";
+
+    /**
+     * slices: view key → rows, for views past the capacity;
+     * removedSlices: keys no longer replicated.
+     */
+    public record FeedMessage(
+            String leader,
+            long seq,
+            long redisGeneration,
+            boolean full,
+            List<LeaderboardView.Entry> upsert,
+            List<UUID> removed,
+            Map<String, List<LeaderboardDTO>> slices,
+            List<String> removedSlices
+    ) {
+
+        public FeedMessage {
+            // leader from before slices were replicated
+            slices = slices == null ? Map.of() : slices;
+            removedSlices = removedSlices == null ? List.of() : removedSlices;
+        }
+    }
+
+    /**
+     * An instance's views that need rows past the capacity. Repeated every
+     * heartbeat while non-empty; sent once empty when the last one goes.
+     */
+    public record DemandMessage(String instance, List<ViewSpec> views) {
+    }
+
+    private record Demand(List<ViewSpec> views, long atNanos) {
+    }
+
+    @Value("${app.leaderboard.replication.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.leaderboard.replication.heartbeat-ms:1000}")
+    private long heartbeatMs;
+
+    @Value("${app.leaderboard.replication.feed-timeout-ms:3000}")
+    private long feedTimeoutMs;
+
+    // distinct views past the capacity the leader reads from Redis per publish
+    @Value("${app.leaderboard.replication.max-slices:64}")
+    private int maxSlices;
+
+    @Autowired
+    private StringRedisTemplate redis;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private LeaderLease lease;
+
+    @Autowired
+    private LeaderboardView view;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter gaps;
+
+    // LeaderboardService: one Redis read per slice
+    private volatile Function<ViewSpec, List<LeaderboardDTO>> sliceReader;
+    // this instance's subscribed views
+    private volatile Supplier<List<ViewSpec>> localViews = List::of;
+    private final List<Runnable> sliceListeners = new CopyOnWriteArrayList<>();
+
+    // view key → rows past the capacity, as published by the leader
+    private volatile Map<String, List<LeaderboardDTO>> slices = Map.of();
+
+    // instance → its views past the capacity; read by whoever leads
+    private final Map<String, Demand> demand = new ConcurrentHashMap<>();
+
+    // ---------- leader state (publish thread) ----------
+    private Map<UUID, LeaderboardView.Entry> published = Map.of();
+    private long seq;
+    private long publishedGeneration = -1;
+    private long lastSentNanos;
+    private volatile boolean fullRequested = true;
+    private boolean slicesCapped;
+
+    // ---------- follower state (pub/sub dispatch thread) ----------
+    private String feedLeader;
+    private long feedSeq;
+    private boolean awaitingFull = true;
+    private long lastResyncNanos;
+    private volatile long lastAppliedNanos;
+    private Set<String> announced = Set.of();
+    private long lastAnnouncedNanos;
+
+    @PostConstruct
+    public void init() {
+
+        gaps = Counter.builder("leaderboard.replication.gaps")
+                .description("Feed gaps that made a follower wait for a full copy")
+                .register(meterRegistry);
+        Gauge.builder("leaderboard.replication.slices", this, r -> r.slices.size())
+                .description("Views past the view capacity replicated through the feed")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+
+        listenerContainer.addMessageListener(this,
+                List.of(new ChannelTopic(FEED), new ChannelTopic(RESYNC), new ChannelTopic(DEMAND)));
+        lease.onAcquired(() -> fullRequested = true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void readSlicesWith(Function<ViewSpec, List<LeaderboardDTO>> reader) {
+        this.sliceReader = reader;
+    }
+
+    public void viewsFrom(Supplier<List<ViewSpec>> views) {
+        this.localViews = views;
+    }
+
+    /**
+     * Called when replicated slices change, so views republish although
+     * the ranking did not move. Must not block.
+     */
+    public void onSlices(Runnable listener) {
+        sliceListeners.add(listener);
+    }
+
+    /**
+     * Whether views past the capacity are answered by {@link #slice}: on
+     * the leader, and on a follower while the feed is live. Otherwise the
+     * caller reads Redis, as it reloads from it anyway.
+     */
+    public boolean servesSlices() {
+        return enabled && (lease.isLeader() || !reloadsFromRedis());
+    }
+
+    /**
+     * Replicated rows of a view past the capacity, or null if the leader
+     * has not published it.
+     */
+    public List<LeaderboardDTO> slice(ViewSpec spec) {
+        return slices.get(spec.key());
+    }
+
+    /**
+     * Whether this instance should run its own view reloads.
+     */
+    public boolean reloadsFromRedis() {
+        long applied = lastAppliedNanos;
+        return !enabled
+                || lease.isLeader()
+                || applied == 0
+                || System.nanoTime() - applied > feedTimeoutMs * 1_000_000;
+    }
+
+    // ---------- LEADER ----------
+    @Scheduled(fixedDelayString = "${app.leaderboard.replication.publish-ms:100}")
+    public void publish() {
+
+        if (!enabled || !lease.isLeader()) {
+            return;
+        }
+
+        // followers read through this view: keep it reloading, and never
+        // ship one outside its staleness bound
+        LeaderboardView.Ranked ranked = view.ranked();
+        if (ranked == null) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long generation = view.generation();
+        boolean full = fullRequested;
+        Map<String, ViewSpec> wanted = wantedSlices(ranked, now);
+
+        if (!full && generation == publishedGeneration && wanted.keySet().equals(slices.keySet())
+                && now - lastSentNanos < heartbeatMs * 1_000_000) {
+            return;
+        }
+
+        fullRequested = false;
+        List<LeaderboardView.Entry> entries = view.entries();
+
+        Map<UUID, LeaderboardView.Entry> next = new HashMap<>(entries.size() * 2);
+        List<LeaderboardView.Entry> upsert = new ArrayList<>();
+        for (LeaderboardView.Entry e : entries) {
+            next.put(e.portfolioId(), e);
+            if (full || !e.equals(published.get(e.portfolioId()))) {
+                upsert.add(e);
+            }
+        }
+
+        List<UUID> removed = new ArrayList<>();
+        if (!full) {
+            for (UUID pid : published.keySet()) {
+                if (!next.containsKey(pid)) {
+                    removed.add(pid);
+                }
+            }
+        }
+
+        Map<String, List<LeaderboardDTO>> nextSlices = readSlices(wanted);
+        Map<String, List<LeaderboardDTO>> changedSlices = new HashMap<>();
+        nextSlices.forEach((key, rows) -> {
+            if (full || !rows.equals(slices.get(key))) {
+                changedSlices.put(key, rows);
+            }
+        });
+        List<String> removedSlices = new ArrayList<>();
+        if (!full) {
+            for (String key : slices.keySet()) {
+                if (!nextSlices.containsKey(key)) {
+                    removedSlices.add(key);
+                }
+            }
+        }
+
+        FeedMessage msg = new FeedMessage(lease.id(), ++seq, view.redisGeneration(), full, upsert, removed,
+                changedSlices, removedSlices);
+
+        try {
+            redis.convertAndSend(FEED, mapper.writeValueAsString(msg));
+            published = next;
+            publishedGeneration = generation;
+            lastSentNanos = now;
+            setSlices(nextSlices);
+        } catch (Exception e) {
+            // followers see the seq gap and ask for a full copy
+            log.warn("Leaderboard feed publish failed seq={}", msg.seq(), e);
+        }
+    }
+
+    // own views past the capacity first, then the followers'
+    private Map<String, ViewSpec> wantedSlices(LeaderboardView.Ranked ranked, long now) {
+
+        Map<String, ViewSpec> wanted = new LinkedHashMap<>();
+        for (ViewSpec spec : deepViews(ranked)) {
+            wanted.put(spec.key(), spec);
+        }
+
+        demand.values().removeIf(d -> now - d.atNanos() > feedTimeoutMs * 1_000_000);
+        for (Demand d : demand.values()) {
+            for (ViewSpec spec : d.views()) {
+                // answered by the view itself by now
+                if (!wanted.containsKey(spec.key()) && ranked.slice(spec) == null) {
+                    wanted.put(spec.key(), spec);
+                }
+            }
+        }
+
+        boolean capped = wanted.size() > maxSlices;
+        if (capped != slicesCapped) {
+            slicesCapped = capped;
+            if (capped) {
+                log.warn("Leaderboard views past the view capacity: {} > max-slices {}", wanted.size(), maxSlices);
+            }
+        }
+        if (capped) {
+            Map<String, ViewSpec> kept = new LinkedHashMap<>();
+            for (Map.Entry<String, ViewSpec> e : wanted.entrySet()) {
+                if (kept.size() == maxSlices) {
+                    break;
+                }
+                kept.put(e.getKey(), e.getValue());
+            }
+            wanted = kept;
+        }
+        return wanted;
+    }
+
+    private Map<String, List<LeaderboardDTO>> readSlices(Map<String, ViewSpec> wanted) {
+
+        Map<String, List<LeaderboardDTO>> out = new HashMap<>(wanted.size() * 2);
+        wanted.forEach((key, spec) -> {
+            try {
+                out.put(key, List.copyOf(sliceReader.apply(spec)));
+            } catch (Exception e) {
+                // keep the last rows rather than drop the view
+                List<LeaderboardDTO> last = slices.get(key);
+                if (last != null) {
+                    out.put(key, last);
+                }
+                log.warn("Leaderboard slice read failed view={}", key, e);
+            }
+        });
+        return out;
+    }
+
+    private List<ViewSpec> deepViews(LeaderboardView.Ranked ranked) {
+        List<ViewSpec> deep = new ArrayList<>();
+        for (ViewSpec spec : localViews.get()) {
+            if (ranked.slice(spec) == null) {
+                deep.add(spec);
+            }
+        }
+        return deep;
+    }
+
+    private void setSlices(Map<String, List<LeaderboardDTO>> next) {
+        if (next.equals(slices)) {
+            return;
+        }
+        slices = Map.copyOf(next);
+        for (Runnable l : sliceListeners) {
+            l.run();
+        }
+    }
+
+    // ---------- FOLLOWER ----------
+    /**
+     * Announces this instance's views past the capacity to the leader: on
+     * change, and every heartbeat while there are any.
+     */
+    @Scheduled(fixedDelayString = "${app.leaderboard.replication.publish-ms:100}")
+    public void announce() {
+
+        if (!enabled || lease.isLeader()) {
+            return;
+        }
+
+        List<ViewSpec> deep = List.of();
+        List<ViewSpec> views = localViews.get();
+        if (!views.isEmpty()) {
+            LeaderboardView.Ranked ranked = view.ranked();
+            if (ranked == null) {
+                return; // cannot tell; the leader keeps the last announcement until it expires
+            }
+            deep = deepViews(ranked);
+        }
+
+        Set<String> keys = new HashSet<>();
+        for (ViewSpec spec : deep) {
+            keys.add(spec.key());
+        }
+
+        long now = System.nanoTime();
+        if (keys.equals(announced) && (keys.isEmpty() || now - lastAnnouncedNanos < heartbeatMs * 1_000_000)) {
+            return;
+        }
+
+        try {
+            redis.convertAndSend(DEMAND, mapper.writeValueAsString(new DemandMessage(lease.id(), deep)));
+            announced = keys;
+            lastAnnouncedNanos = now;
+        } catch (Exception e) {
+            log.debug("Leaderboard view demand announce failed", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+
+        String channel = new String(message.getChannel());
+
+        if (RESYNC.equals(channel)) {
+            if (lease.isLeader()) {
+                fullRequested = true;
+            }
+            return;
+        }
+
+        // kept on every instance, so a new leader has it at once
+        if (DEMAND.equals(channel)) {
+            try {
+                DemandMessage d = mapper.readValue(message.getBody(), DemandMessage.class);
+                if (d.views().isEmpty()) {
+                    demand.remove(d.instance());
+                } else {
+                    demand.put(d.instance(), new Demand(d.views(), System.nanoTime()));
+                }
+            } catch (Exception e) {
+                log.warn("Unreadable leaderboard view demand message", e);
+            }
+            return;
+        }
+
+        FeedMessage msg;
+        try {
+            msg = mapper.readValue(message.getBody(), FeedMessage.class);
+        } catch (Exception e) {
+            log.warn("Unreadable leaderboard feed message", e);
+            return;
+        }
+
+        if (msg.leader().equals(lease.id())) {
+            return; // own feed
+        }
+
+        if (msg.full()) {
+            view.replace(msg.upsert(), System.nanoTime(), msg.redisGeneration());
+            setSlices(msg.slices());
+        } else if (awaitingFull || !msg.leader().equals(feedLeader) || msg.seq() != feedSeq + 1) {
+            if (!awaitingFull) {
+                gaps.increment();
+                log.warn("Leaderboard feed gap leader={} seq={} expected={}", msg.leader(), msg.seq(), feedSeq + 1);
+            }
+            awaitingFull = true;
+            requestResync();
+            return;
+        } else {
+            view.sync(msg.upsert(), msg.removed(), msg.redisGeneration());
+            if (!msg.slices().isEmpty() || !msg.removedSlices().isEmpty()) {
+                Map<String, List<LeaderboardDTO>> next = new HashMap<>(slices);
+                next.putAll(msg.slices());
+                next.keySet().removeAll(msg.removedSlices());
+                setSlices(next);
+            }
+        }
+
+        feedLeader = msg.leader();
+        feedSeq = msg.seq();
+        awaitingFull = false;
+        lastAppliedNanos = System.nanoTime();
+    }
+
+    // at most one request per heartbeat; the leader coalesces them anyway
+    private void requestResync() {
+        long now = System.nanoTime();
+        if (now - lastResyncNanos < heartbeatMs * 1_000_000) {
+            return;
+        }
+        lastResyncNanos = now;
+        try {
+            redis.convertAndSend(RESYNC, lease.id());
+        } catch (Exception e) {
+            log.debug("Leaderboard feed resync request failed", e);
+        }
+    }
+}
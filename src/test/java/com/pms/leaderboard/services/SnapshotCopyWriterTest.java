@@ -0,0 +1,151 @@
+package com.pms.leaderboard.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.postgresql.util.ByteConverter;
+
+import com.pms.leaderboard.dto.BatchDTO;
+
+/**
+ * Binary COPY field encoders against the wire format numeric_recv and
+ * timestamptz_recv read, and against pgjdbc's own binary NUMERIC codec.
+ */
+class SnapshotCopyWriterTest {
+
+    // ---------- NUMERIC ----------
+    // weight 0 as numeric_send writes it (strip_var)
+    @Test
+    void zeroKeepsDisplayScale() throws IOException {
+        assertThat(numeric("0")).isEqualTo(field(0, 0, 0, 0));
+        assertThat(numeric("0.00")).isEqualTo(field(0, 0, 0, 2));
+    }
+
+    @Test
+    void negative() throws IOException {
+        // -12.5 = -(12 + 5000 * 10000^-1)
+        assertThat(numeric("-12.5")).isEqualTo(field(2, 0, 0x4000, 1, 12, 5000));
+    }
+
+    @Test
+    void belowOne() throws IOException {
+        // 0.05 = 500 * 10000^-1
+        assertThat(numeric("0.05")).isEqualTo(field(1, -1, 0, 2, 500));
+        // 0.00005 = 5000 * 10000^-2, the all-zero first group is not sent
+        assertThat(numeric("0.00005")).isEqualTo(field(1, -2, 0, 5, 5000));
+    }
+
+    @Test
+    void integerPartAcrossGroupBoundary() throws IOException {
+        // 12345.67 = 1 * 10000 + 2345 + 6700 * 10000^-1
+        assertThat(numeric("12345.67")).isEqualTo(field(3, 1, 0, 2, 1, 2345, 6700));
+        // trailing zero groups are trimmed, weight still places the 1
+        assertThat(numeric("10000")).isEqualTo(field(1, 1, 0, 0, 1));
+        assertThat(numeric("100000000.0001")).isEqualTo(field(4, 2, 0, 4, 1, 0, 0, 1));
+    }
+
+    @Test
+    void trailingZerosKeepDisplayScale() throws IOException {
+        assertThat(numeric("1.50")).isEqualTo(field(2, 0, 0, 2, 1, 5000));
+        assertThat(numeric("2.0000")).isEqualTo(field(1, 0, 0, 4, 2));
+    }
+
+    @Test
+    void negativeScaleIsSentAsInteger() throws IOException {
+        assertThat(numeric(new BigDecimal("1.2E+5"))).isEqualTo(field(1, 1, 0, 0, 12));
+    }
+
+    @Test
+    void nullIsSqlNull() throws IOException {
+        assertThat(numeric((BigDecimal) null)).isEqualTo(new byte[]{-1, -1, -1, -1});
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "0", "0.00", "1", "-1", "0.05", "-0.05", "0.00005", "0.0001", "0.123456789",
+        "9999", "10000", "10001", "12345.67", "-12345.67", "1.50", "100.0100",
+        "99999999.99999999", "-0.000000000001", "123456789012345678901234567890.123456"
+    })
+    void roundTripsThroughPgjdbc(String s) throws IOException {
+        BigDecimal v = new BigDecimal(s);
+        byte[] field = numeric(v);
+        byte[] value = Arrays.copyOfRange(field, 4, field.length);
+
+        assertThat(ByteBuffer.wrap(field).getInt()).isEqualTo(value.length);
+        assertThat(ByteConverter.numeric(value)).isEqualTo(v);
+        // pgjdbc sends zero with weight -1, Postgres itself with 0; both are read back
+        if (v.signum() != 0) {
+            assertThat(value).isEqualTo(ByteConverter.numeric(v));
+        }
+    }
+
+    // ---------- TIMESTAMPTZ ----------
+    @Test
+    void timestampIsMicrosSincePostgresEpoch() {
+        assertThat(SnapshotCopyWriter.micros(Instant.parse("2000-01-01T00:00:00Z"))).isZero();
+        assertThat(SnapshotCopyWriter.micros(Instant.parse("2000-01-01T00:00:01.000002Z"))).isEqualTo(1_000_002L);
+        assertThat(SnapshotCopyWriter.micros(Instant.parse("1999-12-31T23:59:59Z"))).isEqualTo(-1_000_000L);
+        // nanos below a microsecond are truncated, as timestamptz stores micros
+        assertThat(SnapshotCopyWriter.micros(Instant.parse("2026-01-01T00:00:00.123456789Z")))
+                .isEqualTo(820_540_800_123_456L);
+    }
+
+    @Test
+    void rowIsStampedWithWriteTimeAndKeepsEventTime() throws IOException {
+        Instant stamp = Instant.parse("2026-01-01T00:05:00Z");
+        Instant event = Instant.parse("2026-01-01T00:01:00Z");
+
+        assertThat(timestamps(event, stamp)).containsExactly(
+                SnapshotCopyWriter.micros(stamp), SnapshotCopyWriter.micros(event));
+        // no event time on the entry: both are the write time
+        assertThat(timestamps(null, stamp)).containsExactly(
+                SnapshotCopyWriter.micros(stamp), SnapshotCopyWriter.micros(stamp));
+    }
+
+    // ---------- helpers ----------
+    private static byte[] numeric(String v) throws IOException {
+        return numeric(new BigDecimal(v));
+    }
+
+    private static byte[] numeric(BigDecimal v) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        SnapshotCopyWriter.numeric(new DataOutputStream(buf), v);
+        return buf.toByteArray();
+    }
+
+    // int32 length, then int16 ndigits, weight, sign, dscale, digits
+    private static byte[] field(int ndigits, int weight, int sign, int dscale, int... digits) {
+        ByteBuffer b = ByteBuffer.allocate(4 + 8 + digits.length * 2);
+        b.putInt(8 + digits.length * 2);
+        b.putShort((short) ndigits).putShort((short) weight).putShort((short) sign).putShort((short) dscale);
+        for (int d : digits) {
+            b.putShort((short) d);
+        }
+        return b.array();
+    }
+
+    // updated_at, event_at: the last two columns of the only row, each
+    // int32 8 + int64 micros; then the int16 trailer
+    private static long[] timestamps(Instant eventAt, Instant stamp) throws IOException {
+        BatchDTO row = new BatchDTO(UUID.randomUUID(), BigDecimal.ONE, 1,
+                BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE, eventAt);
+        byte[] copy = SnapshotCopyWriter.encode(List.of(row), stamp);
+        ByteBuffer b = ByteBuffer.wrap(copy);
+        assertThat(b.getShort(copy.length - 2)).isEqualTo((short) -1);
+        assertThat(b.getInt(copy.length - 26)).isEqualTo(8);
+        assertThat(b.getInt(copy.length - 14)).isEqualTo(8);
+        return new long[]{b.getLong(copy.length - 22), b.getLong(copy.length - 10)};
+    }
+}